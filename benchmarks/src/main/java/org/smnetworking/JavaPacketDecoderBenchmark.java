@@ -0,0 +1,57 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaPacketDecoderBenchmark {
+    private static final int PACKETS = 32;
+    @Param({"16", "512"})
+    public int bodyLength;
+    // How many network reads the batch of frames arrives in: 1 = fully coalesced, otherwise each frame is split in pieces.
+    @Param({"1", "4"})
+    public int fragmentsPerFrame;
+    private EmbeddedChannel channel;
+    private ByteBuf stream;
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel(new JavaPacketDecoder());
+        stream = PooledByteBufAllocator.DEFAULT.directBuffer();
+        for (int i = 0; i < PACKETS; i++) {
+            ProtocolUtils.writeVarInt(bodyLength, stream);
+            stream.writeZero(bodyLength);
+        }
+    }
+    @TearDown
+    public void tearDown() {
+        stream.release();
+        channel.finishAndReleaseAll();
+    }
+    @Benchmark
+    @OperationsPerInvocation(PACKETS)
+    public int decode() {
+        int total = stream.readableBytes();
+        if (fragmentsPerFrame == 1) {
+            channel.writeInbound(stream.retainedDuplicate());
+        } else {
+            int chunk = Math.max(1, total / (PACKETS * fragmentsPerFrame));
+            for (int offset = 0; offset < total; offset += chunk) {
+                channel.writeInbound(stream.retainedSlice(offset, Math.min(chunk, total - offset)));
+            }
+        }
+        int frames = 0;
+        ByteBuf frame;
+        while ((frame = channel.readInbound()) != null) {
+            frame.release();
+            frames++;
+        }
+        return frames;
+    }
+}
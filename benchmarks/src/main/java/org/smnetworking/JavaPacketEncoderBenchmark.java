@@ -0,0 +1,42 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JavaPacketEncoderBenchmark {
+    @Param({"16", "512", "8192"})
+    public int bodyLength;
+    // Packets built with JavaPacketEncoder.newPacket get their header in place; plain buffers take the separate-header path.
+    @Param({"true", "false"})
+    public boolean headroom;
+    private EmbeddedChannel channel;
+    @Setup
+    public void setup() {
+        channel = new EmbeddedChannel(new JavaPacketEncoder());
+    }
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+    @Benchmark
+    public int encode() {
+        ByteBuf packet = headroom ? JavaPacketEncoder.newPacket(channel.alloc(), bodyLength) : channel.alloc().ioBuffer(bodyLength);
+        packet.writerIndex(packet.writerIndex() + bodyLength);
+        channel.writeOutbound(packet);
+        int written = 0;
+        Object out;
+        while ((out = channel.readOutbound()) != null) {
+            written += ((ByteBuf) out).readableBytes();
+            ReferenceCountUtil.release(out);
+        }
+        return written;
+    }
+}
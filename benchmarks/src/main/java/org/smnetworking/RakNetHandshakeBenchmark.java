@@ -0,0 +1,50 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RakNetHandshakeBenchmark {
+    private final long server = PeSessionDemultiplexer.sessionKey(new InetSocketAddress("127.0.0.1", 19132));
+    private final long guid = ProtocolUtils.generateClientGuid();
+    private ByteBuf buf;
+    @Setup
+    public void setup() {
+        buf = PooledByteBufAllocator.DEFAULT.directBuffer(1500);
+    }
+    @TearDown
+    public void tearDown() {
+        buf.release();
+    }
+    @Benchmark
+    public int openConnectionRequest1() {
+        buf.clear();
+        RakNetHandshakes.writeOpenConnectionRequest1(buf, 1492);
+        return buf.writerIndex();
+    }
+    @Benchmark
+    public int openConnectionRequest2() {
+        buf.clear();
+        RakNetHandshakes.writeOpenConnectionRequest2(buf, server, 1492, guid);
+        return buf.writerIndex();
+    }
+    @Benchmark
+    public int connectionRequest() {
+        buf.clear();
+        RakNetHandshakes.writeConnectionRequest(buf, guid, 123456789L);
+        return buf.writerIndex();
+    }
+    @Benchmark
+    public int newIncomingConnection() {
+        buf.clear();
+        RakNetHandshakes.writeNewIncomingConnection(buf, server, 123456789L, 987654321L);
+        return buf.writerIndex();
+    }
+}
@@ -0,0 +1,66 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringCodecBenchmark {
+    @Param({"8", "64"})
+    public int stringLength;
+    private String string;
+    private ByteBuf buf;
+    private ByteBuf stringEncoded;
+    private ByteBuf peStringEncoded;
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(stringLength);
+        for (int i = 0; i < stringLength; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        string = sb.toString();
+        buf = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        stringEncoded = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        ProtocolUtils.writeString(string, stringEncoded);
+        peStringEncoded = PooledByteBufAllocator.DEFAULT.directBuffer(256);
+        ProtocolUtils.writePEString(string, peStringEncoded);
+    }
+    @TearDown
+    public void tearDown() {
+        buf.release();
+        stringEncoded.release();
+        peStringEncoded.release();
+    }
+    @Benchmark
+    public String readString() {
+        stringEncoded.readerIndex(0);
+        return ProtocolUtils.readString(stringEncoded);
+    }
+    @Benchmark
+    public String readStringInterned() {
+        stringEncoded.readerIndex(0);
+        return ProtocolUtils.readString(stringEncoded, StringInternCache.SHARED);
+    }
+    @Benchmark
+    public int writeString() {
+        buf.clear();
+        ProtocolUtils.writeString(string, buf);
+        return buf.writerIndex();
+    }
+    @Benchmark
+    public String readPEString() {
+        peStringEncoded.readerIndex(0);
+        return ProtocolUtils.readPEString(peStringEncoded);
+    }
+    @Benchmark
+    public int writePEString() {
+        buf.clear();
+        ProtocolUtils.writePEString(string, buf);
+        return buf.writerIndex();
+    }
+}
@@ -0,0 +1,46 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VarIntBenchmark {
+    @Param({"1", "2", "3", "5"})
+    public int varIntBytes;
+    private int value;
+    private ByteBuf buf;
+    private ByteBuf varIntEncoded;
+    @Setup
+    public void setup() {
+        value = varIntBytes == 5 ? -1 : (1 << (7 * varIntBytes - 1));
+        buf = PooledByteBufAllocator.DEFAULT.directBuffer(8);
+        varIntEncoded = PooledByteBufAllocator.DEFAULT.directBuffer(8);
+        ProtocolUtils.writeVarInt(value, varIntEncoded);
+    }
+    @TearDown
+    public void tearDown() {
+        buf.release();
+        varIntEncoded.release();
+    }
+    @Benchmark
+    public int readVarInt() {
+        varIntEncoded.readerIndex(0);
+        return ProtocolUtils.readVarInt(varIntEncoded);
+    }
+    @Benchmark
+    public int writeVarInt() {
+        buf.clear();
+        ProtocolUtils.writeVarInt(value, buf);
+        return buf.writerIndex();
+    }
+    @Benchmark
+    public int getVarIntSize() {
+        return ProtocolUtils.getVarIntSize(value);
+    }
+}
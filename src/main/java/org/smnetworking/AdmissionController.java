@@ -0,0 +1,165 @@
+package org.smnetworking;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+// Gates backend session setup: at most ADMISSION_MAX_HANDSHAKES run at once, the rest wait in FIFO order, and
+// clients beyond the queue bound are turned away immediately instead of piling up work on the event loops.
+public class AdmissionController {
+    private static final long BUCKET_IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Pending> queue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<InetAddress, TokenBucket> connectionBuckets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<InetAddress, TokenBucket> statusBuckets = new ConcurrentHashMap<>();
+    private final LongAdder rejectedConnections = new LongAdder();
+    private final LongAdder rejectedStatus = new LongAdder();
+    private final LongAdder rejectedLogins = new LongAdder();
+    public AdmissionController(int maxInFlight, int maxQueued) {
+        this.maxInFlight = maxInFlight;
+        this.maxQueued = maxQueued;
+    }
+    public void start(EventLoop loop) {
+        loop.scheduleAtFixedRate(this::evictIdleBuckets, 30, 30, TimeUnit.SECONDS);
+    }
+    public boolean allowConnection(SocketAddress remote) {
+        if (take(connectionBuckets, remote, ProxyConfig.ADMISSION_CONNECTIONS_PER_SECOND, ProxyConfig.ADMISSION_CONNECTION_BURST)) {
+            return true;
+        }
+        rejectedConnections.increment();
+        return false;
+    }
+    public boolean allowStatus(SocketAddress remote) {
+        if (take(statusBuckets, remote, ProxyConfig.ADMISSION_STATUS_PER_SECOND, ProxyConfig.ADMISSION_STATUS_BURST)) {
+            return true;
+        }
+        rejectedStatus.increment();
+        return false;
+    }
+    // Runs start on the channel's event loop once a slot frees up; returns false if the queue is full and the caller must reject.
+    public boolean admit(Channel channel, Runnable start) {
+        if (tryAcquire()) {
+            start.run();
+            return true;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejectedLogins.increment();
+            return false;
+        }
+        Pending pending = new Pending(channel, start);
+        queue.add(pending);
+        // A client that gives up while waiting must not keep holding a queue place.
+        channel.closeFuture().addListener(pending.onClose);
+        // A slot may have been released between the failed tryAcquire and the enqueue.
+        drain();
+        return true;
+    }
+    public void release() {
+        inFlight.decrementAndGet();
+        drain();
+    }
+    private void drain() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            Pending next = queue.poll();
+            if (next == null) {
+                inFlight.decrementAndGet();
+                return;
+            }
+            queued.decrementAndGet();
+            next.channel.closeFuture().removeListener(next.onClose);
+            if (!next.channel.isActive()) {
+                inFlight.decrementAndGet();
+                continue;
+            }
+            next.channel.eventLoop().execute(() -> {
+                if (next.channel.isActive()) {
+                    next.start.run();
+                } else {
+                    release();
+                }
+            });
+        }
+    }
+    private boolean tryAcquire() {
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxInFlight) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+    private static boolean take(ConcurrentHashMap<InetAddress, TokenBucket> buckets, SocketAddress remote, int perSecond, int burst) {
+        if (perSecond <= 0 || !(remote instanceof InetSocketAddress)) {
+            return true;
+        }
+        // Keyed on the address itself: InetAddress.hashCode() folds IPv6 addresses together, and clients that collide
+        // would share one limit.
+        TokenBucket bucket = buckets.computeIfAbsent(((InetSocketAddress) remote).getAddress(), ip -> new TokenBucket(burst));
+        return bucket.tryTake(System.nanoTime(), perSecond, burst);
+    }
+    private void evictIdleBuckets() {
+        long now = System.nanoTime();
+        connectionBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+        statusBuckets.values().removeIf(bucket -> bucket.isIdle(now));
+    }
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    public int getQueued() {
+        return queued.get();
+    }
+    public long getRejectedConnections() {
+        return rejectedConnections.sum();
+    }
+    public long getRejectedStatus() {
+        return rejectedStatus.sum();
+    }
+    public long getRejectedLogins() {
+        return rejectedLogins.sum();
+    }
+    private final class Pending {
+        private final Channel channel;
+        private final Runnable start;
+        private final ChannelFutureListener onClose = future -> {
+            if (queue.remove(this)) {
+                queued.decrementAndGet();
+            }
+        };
+        private Pending(Channel channel, Runnable start) {
+            this.channel = channel;
+            this.start = start;
+        }
+    }
+    private static final class TokenBucket {
+        private double tokens;
+        private long lastRefillNanos = System.nanoTime();
+        private TokenBucket(int burst) {
+            this.tokens = burst;
+        }
+        synchronized boolean tryTake(long now, int perSecond, int burst) {
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) * perSecond / 1e9);
+            lastRefillNanos = now;
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+        synchronized boolean isIdle(long now) {
+            return now - lastRefillNanos > BUCKET_IDLE_NANOS;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+// The set of PE servers new logins can be routed to. Every backend is probed with RakNet unconnected pings, and
+// one that stops answering is drained automatically until it answers again.
+public class BackendRegistry {
+    enum Routing {
+        LEAST_SESSIONS,
+        LOWEST_RTT
+    }
+    private final List<PeBackend> backends;
+    private final Routing routing;
+    private ScheduledFuture<?> healthTask;
+    public BackendRegistry(List<InetSocketAddress> addresses, PeSessionDemultiplexer demultiplexer, Routing routing) {
+        if (addresses.isEmpty()) {
+            throw new IllegalArgumentException("At least one PE backend is required");
+        }
+        List<PeBackend> list = new ArrayList<>(addresses.size());
+        for (InetSocketAddress address : addresses) {
+            list.add(new PeBackend(address, demultiplexer));
+        }
+        this.backends = Collections.unmodifiableList(list);
+        this.routing = routing;
+    }
+    public void start(EventLoopGroup group) {
+        for (PeBackend backend : backends) {
+            backend.statusCache().start(group.next());
+            if (backend.connectionPool() != null) {
+                backend.connectionPool().start();
+            }
+        }
+        healthTask = group.next().scheduleAtFixedRate(this::checkHealth, ProxyConfig.STATUS_REFRESH_MILLIS, ProxyConfig.STATUS_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+        ProxyLog.info("Routing new logins across " + backends.size() + " PE backend(s) by " + routing.name().toLowerCase().replace('_', ' '));
+    }
+    public void stop() {
+        if (healthTask != null) {
+            healthTask.cancel(false);
+        }
+        for (PeBackend backend : backends) {
+            if (backend.connectionPool() != null) {
+                backend.connectionPool().stop();
+            }
+            backend.statusCache().stop();
+        }
+    }
+    // Picks the backend for a new login, or null when every backend is drained or unhealthy.
+    public PeBackend select() {
+        PeBackend best = null;
+        for (PeBackend backend : backends) {
+            if (backend.isAcceptingSessions() && (best == null || isBetter(backend, best))) {
+                best = backend;
+            }
+        }
+        return best;
+    }
+    private boolean isBetter(PeBackend candidate, PeBackend current) {
+        if (routing == Routing.LOWEST_RTT) {
+            long rtt = candidate.getRttNanos();
+            long currentRtt = current.getRttNanos();
+            if (rtt != currentRtt) {
+                return rtt < currentRtt;
+            }
+            return candidate.getSessions() < current.getSessions();
+        }
+        int sessions = candidate.getSessions();
+        int currentSessions = current.getSessions();
+        if (sessions != currentSessions) {
+            return sessions < currentSessions;
+        }
+        return candidate.getRttNanos() < current.getRttNanos();
+    }
+    // The status shown in the Java server list comes from the backend the next login would be routed to.
+    public ServerStatusCache statusCache() {
+        PeBackend backend = select();
+        return (backend != null ? backend : backends.get(0)).statusCache();
+    }
+    public boolean handlePong(InetSocketAddress sender, ByteBuf packet) {
+        for (int i = 0; i < backends.size(); i++) {
+            ServerStatusCache statusCache = backends.get(i).statusCache();
+            if (statusCache.isPongFrom(sender, packet)) {
+                statusCache.onPong(packet);
+                return true;
+            }
+        }
+        return false;
+    }
+    public PeBackend find(String description) {
+        for (PeBackend backend : backends) {
+            if (backend.describe().equalsIgnoreCase(description)) {
+                return backend;
+            }
+        }
+        return null;
+    }
+    public List<PeBackend> backends() {
+        return backends;
+    }
+    private void checkHealth() {
+        for (PeBackend backend : backends) {
+            backend.checkHealth();
+        }
+    }
+    public static Routing parseRouting(String value) {
+        switch (value.trim().toLowerCase()) {
+            case "rtt":
+            case "lowest-rtt":
+                return Routing.LOWEST_RTT;
+            case "sessions":
+            case "least-sessions":
+                return Routing.LEAST_SESSIONS;
+            default:
+                ProxyLog.warn("Unknown backend routing '" + value + "', using least-sessions.");
+                return Routing.LEAST_SESSIONS;
+        }
+    }
+    // Parses "host[:port],host[:port]"; the port defaults to the PE default of 19132.
+    public static List<InetSocketAddress> parseAddresses(String value) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int colon = entry.lastIndexOf(':');
+            String host = colon < 0 ? entry : entry.substring(0, colon);
+            int port = colon < 0 ? 19132 : Integer.parseInt(entry.substring(colon + 1));
+            addresses.add(new InetSocketAddress(host, port));
+        }
+        return addresses;
+    }
+}
@@ -0,0 +1,202 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+public final class ChunkCache {
+    // Chunks hash into independently locked stripes, so event loops translating different columns rarely contend.
+    private static final int STRIPES = 16;
+    private static final ConcurrentHashMap<Long, ChunkCache> caches = new ConcurrentHashMap<>();
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    public ChunkCache(long maxBytes) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxBytes / STRIPES);
+        }
+    }
+    public static ChunkCache forBackend(long backendKey) {
+        return caches.computeIfAbsent(backendKey, key -> new ChunkCache(ProxyConfig.CHUNK_CACHE_MAX_BYTES));
+    }
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    private Stripe stripeFor(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (h >>> 60) & (STRIPES - 1)];
+    }
+    public ByteBuf acquire(int chunkX, int chunkZ, long contentHash) {
+        long key = chunkKey(chunkX, chunkZ);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.get(key);
+            if (entry != null && entry.contentHash == contentHash) {
+                stripe.moveToFront(entry);
+                hits.increment();
+                return entry.data.retainedDuplicate();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+    // Takes ownership of data and returns a reference the caller must release. Columns larger than a stripe's share
+    // of the budget (or any column when the cache is disabled with maxBytes=0) are passed straight through uncached.
+    public ByteBuf put(int chunkX, int chunkZ, long contentHash, ByteBuf data) {
+        long key = chunkKey(chunkX, chunkZ);
+        Stripe stripe = stripeFor(key);
+        if (data.readableBytes() > stripe.maxBytes) {
+            invalidate(chunkX, chunkZ);
+            return data;
+        }
+        ByteBuf result = data.retainedDuplicate();
+        synchronized (stripe) {
+            Entry entry = new Entry(key, contentHash, data);
+            Entry previous = stripe.entries.put(key, entry);
+            if (previous != null) {
+                stripe.unlink(previous);
+                previous.data.release();
+            }
+            stripe.linkFirst(entry);
+            evictions.add(stripe.evictOverflow());
+        }
+        return result;
+    }
+    public void invalidate(int chunkX, int chunkZ) {
+        long key = chunkKey(chunkX, chunkZ);
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            Entry entry = stripe.entries.remove(key);
+            if (entry == null) {
+                return;
+            }
+            stripe.unlink(entry);
+            entry.data.release();
+        }
+        invalidations.increment();
+    }
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Entry entry : stripe.entries.values()) {
+                    entry.data.release();
+                }
+                stripe.entries.clear();
+                stripe.head = null;
+                stripe.tail = null;
+                stripe.sizeBytes = 0;
+            }
+        }
+    }
+    public static long hash(ByteBuf buf, int index, int length) {
+        long h = 0x9E3779B97F4A7C15L ^ length;
+        int end = index + length;
+        for (; index + 8 <= end; index += 8) {
+            h = Long.rotateLeft(h ^ (buf.getLong(index) * 0xC2B2AE3D27D4EB4FL), 31) * 0x9E3779B97F4A7C15L;
+        }
+        for (; index < end; index++) {
+            h = Long.rotateLeft(h ^ ((buf.getByte(index) & 0xFFL) * 0x165667B19E3779F9L), 23) * 0x9E3779B97F4A7C15L;
+        }
+        h ^= h >>> 29;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 32);
+    }
+    public long getSizeBytes() {
+        long total = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total += stripe.sizeBytes;
+            }
+        }
+        return total;
+    }
+    public int getEntryCount() {
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total += stripe.entries.size();
+            }
+        }
+        return total;
+    }
+    public long getHits() {
+        return hits.sum();
+    }
+    public long getMisses() {
+        return misses.sum();
+    }
+    public long getEvictions() {
+        return evictions.sum();
+    }
+    public long getInvalidations() {
+        return invalidations.sum();
+    }
+    // One lock domain: a primitive-keyed map plus an intrusive LRU list, most recently used at the head.
+    private static final class Stripe {
+        private final long maxBytes;
+        private final LongObjectHashMap<Entry> entries = new LongObjectHashMap<>();
+        private Entry head;
+        private Entry tail;
+        private long sizeBytes;
+        private Stripe(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+        private void linkFirst(Entry entry) {
+            entry.prev = null;
+            entry.next = head;
+            if (head != null) {
+                head.prev = entry;
+            } else {
+                tail = entry;
+            }
+            head = entry;
+            sizeBytes += entry.data.readableBytes();
+        }
+        private void unlink(Entry entry) {
+            if (entry.prev != null) {
+                entry.prev.next = entry.next;
+            } else {
+                head = entry.next;
+            }
+            if (entry.next != null) {
+                entry.next.prev = entry.prev;
+            } else {
+                tail = entry.prev;
+            }
+            entry.prev = null;
+            entry.next = null;
+            sizeBytes -= entry.data.readableBytes();
+        }
+        private void moveToFront(Entry entry) {
+            if (head != entry) {
+                unlink(entry);
+                linkFirst(entry);
+            }
+        }
+        private int evictOverflow() {
+            int evicted = 0;
+            while (sizeBytes > maxBytes && tail != null) {
+                Entry eldest = tail;
+                unlink(eldest);
+                entries.remove(eldest.key);
+                eldest.data.release();
+                evicted++;
+            }
+            return evicted;
+        }
+    }
+    private static final class Entry {
+        private final long key;
+        private final long contentHash;
+        private final ByteBuf data;
+        private Entry prev;
+        private Entry next;
+        private Entry(long key, long contentHash, ByteBuf data) {
+            this.key = key;
+            this.contentHash = contentHash;
+            this.data = data;
+        }
+    }
+}
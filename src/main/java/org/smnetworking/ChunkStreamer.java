@@ -0,0 +1,218 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.collection.LongObjectHashMap;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+// Per-session chunk send scheduler. Translated chunks are queued instead of written as they arrive; every tick the
+// nearest ones are sent within a byte budget that grows while the Java channel keeps up and halves when it backs up,
+// batched into Map Chunk Bulk packets. Queued chunks that fall out of view are cancelled and re-requested later.
+final class ChunkStreamer {
+    private static final int JAVA_CHUNK_DATA = 0x21;
+    private static final int JAVA_MAP_CHUNK_BULK = 0x26;
+    // Chunk Data header before the section data: packet ID, X, Z, full column flag, section mask.
+    private static final int CHUNK_DATA_HEADER = 1 + 4 + 4 + 1 + 2;
+    private final PeClient session;
+    private final LongObjectHashMap<PendingChunk> pending = new LongObjectHashMap<>();
+    private PendingChunk[] order = new PendingChunk[16];
+    private final PendingChunk[] batch = new PendingChunk[Math.max(1, Math.min(127, ProxyConfig.CHUNK_BULK_MAX_CHUNKS))];
+    private int budget = ProxyConfig.CHUNK_BUDGET_INITIAL_BYTES;
+    private ScheduledFuture<?> tickTask;
+    ChunkStreamer(PeClient session) {
+        this.session = session;
+    }
+    void start(EventLoop loop) {
+        if (tickTask == null) {
+            tickTask = loop.scheduleAtFixedRate(this::tick, 0, ProxyConfig.CHUNK_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    void stop() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+        for (PendingChunk chunk : pending.values()) {
+            chunk.release();
+        }
+        pending.clear();
+    }
+    // Takes ownership of a translated Chunk Data packet; a newer copy of a still-queued chunk replaces the old one.
+    void enqueue(int chunkX, int chunkZ, ByteBuf packet) {
+        if (!isInView(chunkX, chunkZ, session.getCenterChunkX(), session.getCenterChunkZ())) {
+            packet.release();
+            session.forgetChunkRequest(chunkX, chunkZ);
+            return;
+        }
+        long key = ChunkCache.chunkKey(chunkX, chunkZ);
+        PendingChunk previous = pending.put(key, new PendingChunk(chunkX, chunkZ, packet));
+        if (previous != null) {
+            previous.release();
+        }
+    }
+    // Block changes for a chunk that has not been sent yet must reach the client after it, not before.
+    boolean deferBlockChange(int chunkX, int chunkZ, ByteBuf packet) {
+        PendingChunk chunk = pending.get(ChunkCache.chunkKey(chunkX, chunkZ));
+        if (chunk == null) {
+            return false;
+        }
+        if (chunk.blockChanges == null) {
+            chunk.blockChanges = new ArrayList<>(4);
+        }
+        chunk.blockChanges.add(packet);
+        return true;
+    }
+    void onCenterChanged(int centerX, int centerZ) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (PendingChunk chunk : pending.values().toArray(new PendingChunk[0])) {
+            if (!isInView(chunk.chunkX, chunk.chunkZ, centerX, centerZ)) {
+                pending.remove(ChunkCache.chunkKey(chunk.chunkX, chunk.chunkZ));
+                chunk.release();
+                session.forgetChunkRequest(chunk.chunkX, chunk.chunkZ);
+            }
+        }
+    }
+    private static boolean isInView(int chunkX, int chunkZ, int centerX, int centerZ) {
+        int radius = ProxyConfig.CHUNK_REQUEST_RADIUS;
+        return Math.abs(chunkX - centerX) <= radius && Math.abs(chunkZ - centerZ) <= radius;
+    }
+    int pendingCount() {
+        return pending.size();
+    }
+    private void tick() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Channel channel = session.getJavaClientChannel();
+        if (!channel.isWritable()) {
+            budget = Math.max(ProxyConfig.CHUNK_BUDGET_MIN_BYTES, budget >>> 1);
+            return;
+        }
+        int count = sortByDistance();
+        int spent = 0;
+        int batchCount = 0;
+        for (int i = 0; i < count && spent < budget; i++) {
+            PendingChunk chunk = order[i];
+            order[i] = null;
+            pending.remove(ChunkCache.chunkKey(chunk.chunkX, chunk.chunkZ));
+            spent += chunk.packet.readableBytes();
+            if (chunk.isFullColumn()) {
+                batch[batchCount++] = chunk;
+                if (batchCount == batch.length) {
+                    sendBatch(batchCount);
+                    batchCount = 0;
+                }
+            } else {
+                // Map Chunk Bulk only carries full columns, so partial ones keep their own Chunk Data packet.
+                sendBatch(batchCount);
+                batchCount = 0;
+                sendChunk(chunk);
+            }
+        }
+        sendBatch(batchCount);
+        Arrays.fill(order, 0, count, null);
+        if (channel.isWritable()) {
+            budget = Math.min(ProxyConfig.CHUNK_BUDGET_MAX_BYTES, budget + (budget >>> 2));
+        } else {
+            budget = Math.max(ProxyConfig.CHUNK_BUDGET_MIN_BYTES, budget >>> 1);
+        }
+    }
+    private int sortByDistance() {
+        int count = pending.size();
+        if (order.length < count) {
+            order = new PendingChunk[Integer.highestOneBit(count) << 1];
+        }
+        int centerX = session.getCenterChunkX();
+        int centerZ = session.getCenterChunkZ();
+        int i = 0;
+        for (PendingChunk chunk : pending.values()) {
+            int dx = chunk.chunkX - centerX;
+            int dz = chunk.chunkZ - centerZ;
+            chunk.distance = dx * dx + dz * dz;
+            order[i++] = chunk;
+        }
+        Arrays.sort(order, 0, count, (a, b) -> Integer.compare(a.distance, b.distance));
+        return count;
+    }
+    private void sendBatch(int count) {
+        if (count == 0) {
+            return;
+        }
+        if (count == 1) {
+            sendChunk(batch[0]);
+            batch[0] = null;
+            return;
+        }
+        ByteBuf header = JavaPacketEncoder.newPacket(session.getJavaClientChannel().alloc(), 1 + 1 + 1 + count * 10);
+        ProtocolUtils.writeVarInt(JAVA_MAP_CHUNK_BULK, header);
+        header.writeBoolean(true);
+        ProtocolUtils.writeVarInt(count, header);
+        for (int i = 0; i < count; i++) {
+            PendingChunk chunk = batch[i];
+            header.writeInt(chunk.chunkX);
+            header.writeInt(chunk.chunkZ);
+            header.writeShort(chunk.sectionMask());
+        }
+        CompositeByteBuf bulk = session.getJavaClientChannel().alloc().compositeDirectBuffer(count + 1);
+        bulk.addComponent(true, header);
+        for (int i = 0; i < count; i++) {
+            // Reuse the section data of the (possibly cached) Chunk Data packet without copying it.
+            ByteBuf packet = batch[i].packet;
+            int dataIndex = packet.readerIndex() + CHUNK_DATA_HEADER;
+            int dataLength = ProtocolUtils.readVarInt(packet.slice(dataIndex, packet.writerIndex() - dataIndex));
+            int dataStart = packet.writerIndex() - dataLength;
+            bulk.addComponent(true, packet.retainedSlice(dataStart, dataLength));
+        }
+        session.sendWorldDataToJava(bulk);
+        for (int i = 0; i < count; i++) {
+            sendBlockChanges(batch[i]);
+            batch[i].packet.release();
+            batch[i] = null;
+        }
+    }
+    private void sendChunk(PendingChunk chunk) {
+        session.sendWorldDataToJava(chunk.packet);
+        sendBlockChanges(chunk);
+    }
+    private void sendBlockChanges(PendingChunk chunk) {
+        if (chunk.blockChanges != null) {
+            for (ByteBuf blockChange : chunk.blockChanges) {
+                session.sendWorldDataToJava(blockChange);
+            }
+            chunk.blockChanges = null;
+        }
+    }
+    private static final class PendingChunk {
+        private final int chunkX;
+        private final int chunkZ;
+        private final ByteBuf packet;
+        private ArrayList<ByteBuf> blockChanges;
+        private int distance;
+        private PendingChunk(int chunkX, int chunkZ, ByteBuf packet) {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.packet = packet;
+        }
+        boolean isFullColumn() {
+            return packet.getBoolean(packet.readerIndex() + 9);
+        }
+        int sectionMask() {
+            return packet.getUnsignedShort(packet.readerIndex() + 10);
+        }
+        void release() {
+            packet.release();
+            if (blockChanges != null) {
+                for (ByteBuf blockChange : blockChanges) {
+                    blockChange.release();
+                }
+                blockChanges = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.handler.codec.DecoderException;
+
+import java.util.Arrays;
+public final class ChunkTranslator {
+    public static final int SECTIONS = 8;
+    public static final int SECTION_BLOCKS = 4096;
+    private static final int PE_SECTION_BYTES = 24;
+    private static final int JAVA_CHUNK_DATA = 0x21;
+    private static final ThreadLocal<short[]> SCRATCH = ThreadLocal.withInitial(() -> new short[SECTIONS * SECTION_BLOCKS]);
+    private ChunkTranslator() {
+    }
+    public static ByteBuf translate(ByteBufAllocator alloc, int chunkX, int chunkZ, ByteBuf pe) {
+        short[] states = SCRATCH.get();
+        Arrays.fill(states, (short) 0);
+        int presentMask = 0;
+        int nonEmptyMask = 0;
+        int index = pe.readerIndex();
+        int end = pe.writerIndex();
+        for (int column = 0; column < 256; column++) {
+            if (index >= end) {
+                throw new DecoderException("PE chunk " + chunkX + "," + chunkZ + " is truncated at column " + column);
+            }
+            int flags = pe.getUnsignedByte(index++);
+            int x = column & 0x0F;
+            int z = column >>> 4;
+            for (int section = 0; section < SECTIONS; section++) {
+                if ((flags & (1 << section)) == 0) {
+                    continue;
+                }
+                if (index + PE_SECTION_BYTES > end) {
+                    throw new DecoderException("PE chunk " + chunkX + "," + chunkZ + " is truncated in section " + section);
+                }
+                presentMask |= 1 << section;
+                int base = section * SECTION_BLOCKS + (z << 4) + x;
+                for (int y = 0; y < 16; y++) {
+                    int id = pe.getUnsignedByte(index + y);
+                    int meta = (pe.getUnsignedByte(index + 16 + (y >>> 1)) >>> ((y & 1) << 2)) & 0x0F;
+                    if (id != 0) {
+                        nonEmptyMask |= 1 << section;
+                    }
+                    states[base + (y << 8)] = (short) ((id << 4) | meta);
+                }
+                index += PE_SECTION_BYTES;
+            }
+        }
+        IdMappings.convertPeToJavaBlocks(states, 0, states.length);
+        boolean fullColumn = presentMask == (1 << SECTIONS) - 1;
+        int sectionMask = fullColumn ? nonEmptyMask : presentMask;
+        if (fullColumn && sectionMask == 0) {
+            // 1.8 reads a ground-up Chunk Data with no sections as "unload", so an all-air column keeps section 0.
+            sectionMask = 1;
+        }
+        return writeJavaChunk(alloc, chunkX, chunkZ, states, sectionMask, fullColumn);
+    }
+    private static ByteBuf writeJavaChunk(ByteBufAllocator alloc, int chunkX, int chunkZ, short[] states, int sectionMask, boolean fullColumn) {
+        int sections = Integer.bitCount(sectionMask);
+        int dataSize = sections * (SECTION_BLOCKS * 2 + SECTION_BLOCKS) + (fullColumn ? 256 : 0);
+        ByteBuf out = alloc.directBuffer(1 + 4 + 4 + 1 + 2 + 3 + dataSize);
+        ProtocolUtils.writeVarInt(JAVA_CHUNK_DATA, out);
+        out.writeInt(chunkX);
+        out.writeInt(chunkZ);
+        out.writeBoolean(fullColumn);
+        out.writeShort(sectionMask);
+        ProtocolUtils.writeVarInt(dataSize, out);
+        for (int section = 0; section < SECTIONS; section++) {
+            if ((sectionMask & (1 << section)) == 0) {
+                continue;
+            }
+            int base = section * SECTION_BLOCKS;
+            for (int i = 0; i < SECTION_BLOCKS; i++) {
+                out.writeShortLE(states[base + i]);
+            }
+        }
+        // Block light, then sky light: PE chunk packets carry neither, so render as fully lit.
+        out.writeZero(sections * (SECTION_BLOCKS / 2));
+        for (int i = 0; i < sections * (SECTION_BLOCKS / 2); i += 8) {
+            out.writeLong(-1L);
+        }
+        if (fullColumn) {
+            for (int i = 0; i < 256; i += 8) {
+                out.writeLong(0x0101010101010101L);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,158 @@
+package org.smnetworking;
+import java.util.Arrays;
+final class EntityIdMap {
+    static final int NO_ENTITY = 0;
+    private static final long EMPTY_PE_ID = Long.MIN_VALUE;
+    private static final int MIN_CAPACITY = 64;
+    // Largest population any session has reached; new sessions start big enough to never rehash for it.
+    private static volatile int observedPeak = MIN_CAPACITY / 4;
+    private long[] peKeys;
+    private int[] peValues;
+    private int[] javaKeys;
+    private long[] javaValues;
+    private int mask;
+    private int size;
+    private int nextJavaId = 1;
+    EntityIdMap() {
+        this(observedPeak);
+    }
+    EntityIdMap(int expectedEntities) {
+        allocate(capacityFor(expectedEntities));
+    }
+    int toJava(long peId) {
+        long[] keys = peKeys;
+        for (int slot = mix(peId) & mask; ; slot = (slot + 1) & mask) {
+            long key = keys[slot];
+            if (key == peId) {
+                return peValues[slot];
+            }
+            if (key == EMPTY_PE_ID) {
+                return NO_ENTITY;
+            }
+        }
+    }
+    long toPe(int javaId) {
+        int[] keys = javaKeys;
+        for (int slot = mix(javaId) & mask; ; slot = (slot + 1) & mask) {
+            int key = keys[slot];
+            if (key == javaId) {
+                return javaValues[slot];
+            }
+            if (key == NO_ENTITY) {
+                return EMPTY_PE_ID;
+            }
+        }
+    }
+    int map(long peId) {
+        int existing = toJava(peId);
+        if (existing != NO_ENTITY) {
+            return existing;
+        }
+        int javaId = nextJavaId++;
+        if (nextJavaId == NO_ENTITY) {
+            nextJavaId = 1;
+        }
+        if ((size + 1) << 1 > peKeys.length) {
+            rehash(peKeys.length << 1);
+        }
+        insert(peId, javaId);
+        size++;
+        if (size > observedPeak) {
+            observedPeak = size;
+        }
+        return javaId;
+    }
+    int unmap(long peId) {
+        int slot = mix(peId) & mask;
+        while (peKeys[slot] != peId) {
+            if (peKeys[slot] == EMPTY_PE_ID) {
+                return NO_ENTITY;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int javaId = peValues[slot];
+        removePeSlot(slot);
+        int javaSlot = mix(javaId) & mask;
+        while (javaKeys[javaSlot] != javaId) {
+            javaSlot = (javaSlot + 1) & mask;
+        }
+        removeJavaSlot(javaSlot);
+        size--;
+        return javaId;
+    }
+    void clear() {
+        Arrays.fill(peKeys, EMPTY_PE_ID);
+        Arrays.fill(javaKeys, NO_ENTITY);
+        size = 0;
+        nextJavaId = 1;
+    }
+    int size() {
+        return size;
+    }
+    static int getObservedPeak() {
+        return observedPeak;
+    }
+    private void insert(long peId, int javaId) {
+        int slot = mix(peId) & mask;
+        while (peKeys[slot] != EMPTY_PE_ID) {
+            slot = (slot + 1) & mask;
+        }
+        peKeys[slot] = peId;
+        peValues[slot] = javaId;
+        slot = mix(javaId) & mask;
+        while (javaKeys[slot] != NO_ENTITY) {
+            slot = (slot + 1) & mask;
+        }
+        javaKeys[slot] = javaId;
+        javaValues[slot] = peId;
+    }
+    // Backward-shift deletion keeps linear probe chains intact without tombstones.
+    private void removePeSlot(int hole) {
+        for (int slot = (hole + 1) & mask; peKeys[slot] != EMPTY_PE_ID; slot = (slot + 1) & mask) {
+            int home = mix(peKeys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                peKeys[hole] = peKeys[slot];
+                peValues[hole] = peValues[slot];
+                hole = slot;
+            }
+        }
+        peKeys[hole] = EMPTY_PE_ID;
+    }
+    private void removeJavaSlot(int hole) {
+        for (int slot = (hole + 1) & mask; javaKeys[slot] != NO_ENTITY; slot = (slot + 1) & mask) {
+            int home = mix(javaKeys[slot]) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                javaKeys[hole] = javaKeys[slot];
+                javaValues[hole] = javaValues[slot];
+                hole = slot;
+            }
+        }
+        javaKeys[hole] = NO_ENTITY;
+    }
+    private void rehash(int capacity) {
+        long[] oldPeKeys = peKeys;
+        int[] oldPeValues = peValues;
+        allocate(capacity);
+        for (int i = 0; i < oldPeKeys.length; i++) {
+            if (oldPeKeys[i] != EMPTY_PE_ID) {
+                insert(oldPeKeys[i], oldPeValues[i]);
+            }
+        }
+    }
+    private void allocate(int capacity) {
+        peKeys = new long[capacity];
+        peValues = new int[capacity];
+        javaKeys = new int[capacity];
+        javaValues = new long[capacity];
+        Arrays.fill(peKeys, EMPTY_PE_ID);
+        mask = capacity - 1;
+    }
+    private static int capacityFor(int expectedEntities) {
+        int wanted = Math.max(MIN_CAPACITY, expectedEntities << 1);
+        return Integer.highestOneBit(wanted - 1) << 1;
+    }
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,129 @@
+package org.smnetworking;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+public final class IdMappings {
+    public static final int PE_BLOCK_IDS = 256;
+    public static final int JAVA_BLOCK_IDS = 4096;
+    public static final int PE_ITEM_IDS = 512;
+    public static final int JAVA_ITEM_IDS = 4096;
+    private static final String RESOURCE = "/mappings/pe_java.txt";
+    // Every table is indexed by (id << 4) | meta and holds the mapped (id << 4) | meta.
+    private static final short[] PE_TO_JAVA_BLOCK = identityBlocks(PE_BLOCK_IDS, JAVA_BLOCK_IDS);
+    private static final short[] JAVA_TO_PE_BLOCK = identityBlocks(JAVA_BLOCK_IDS, PE_BLOCK_IDS);
+    private static final int[] PE_TO_JAVA_ITEM = identityItems(PE_ITEM_IDS, JAVA_ITEM_IDS);
+    private static final int[] JAVA_TO_PE_ITEM = identityItems(JAVA_ITEM_IDS, PE_ITEM_IDS);
+    static {
+        load();
+    }
+    private IdMappings() {
+    }
+    public static int peToJavaBlock(int id, int meta) {
+        return PE_TO_JAVA_BLOCK[((id & 0xFF) << 4) | (meta & 0x0F)];
+    }
+    public static int javaToPeBlock(int id, int meta) {
+        return JAVA_TO_PE_BLOCK[((id & 0xFFF) << 4) | (meta & 0x0F)];
+    }
+    public static int peToJavaItem(int id, int meta) {
+        return PE_TO_JAVA_ITEM[((id & 0x1FF) << 4) | (meta & 0x0F)];
+    }
+    public static int javaToPeItem(int id, int meta) {
+        return JAVA_TO_PE_ITEM[((id & 0xFFF) << 4) | (meta & 0x0F)];
+    }
+    // In-place conversion of PE (id << 4) | meta states, laid out as a plain array loop for whole chunk sections.
+    public static void convertPeToJavaBlocks(short[] states, int offset, int length) {
+        short[] table = PE_TO_JAVA_BLOCK;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            states[i] = table[states[i] & 0x0FFF];
+        }
+    }
+    public static void convertJavaToPeBlocks(short[] states, int offset, int length) {
+        short[] table = JAVA_TO_PE_BLOCK;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            states[i] = table[states[i] & 0xFFFF];
+        }
+    }
+    private static short[] identityBlocks(int fromIds, int toIds) {
+        short[] table = new short[fromIds << 4];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (short) ((i >>> 4) < toIds ? i : 0);
+        }
+        return table;
+    }
+    private static int[] identityItems(int fromIds, int toIds) {
+        int[] table = new int[fromIds << 4];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (i >>> 4) < toIds ? i : 0;
+        }
+        return table;
+    }
+    private static void load() {
+        try (InputStream in = IdMappings.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing mapping resource " + RESOURCE);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split("\\s+");
+                if (parts.length != 4) {
+                    throw new IllegalStateException(RESOURCE + ":" + lineNumber + ": expected 4 fields, got '" + line + "'");
+                }
+                apply(parts, lineNumber);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read mapping resource " + RESOURCE, e);
+        }
+    }
+    private static void apply(String[] parts, int lineNumber) {
+        String direction = parts[0];
+        boolean block = parts[1].equals("block");
+        if (!block && !parts[1].equals("item")) {
+            throw new IllegalStateException(RESOURCE + ":" + lineNumber + ": unknown kind '" + parts[1] + "'");
+        }
+        int[] from = parseId(parts[2]);
+        int[] to = parseId(parts[3]);
+        switch (direction) {
+            case "both":
+                put(block, true, from, to);
+                put(block, false, to, from);
+                break;
+            case "pe2java":
+                put(block, true, from, to);
+                break;
+            case "java2pe":
+                put(block, false, from, to);
+                break;
+            default:
+                throw new IllegalStateException(RESOURCE + ":" + lineNumber + ": unknown direction '" + direction + "'");
+        }
+    }
+    private static void put(boolean block, boolean toJava, int[] from, int[] to) {
+        int firstMeta = from[1] < 0 ? 0 : from[1];
+        int lastMeta = from[1] < 0 ? 15 : from[1];
+        for (int meta = firstMeta; meta <= lastMeta; meta++) {
+            int index = (from[0] << 4) | meta;
+            int value = (to[0] << 4) | (to[1] < 0 ? meta : to[1]);
+            if (block) {
+                (toJava ? PE_TO_JAVA_BLOCK : JAVA_TO_PE_BLOCK)[index] = (short) value;
+            } else {
+                (toJava ? PE_TO_JAVA_ITEM : JAVA_TO_PE_ITEM)[index] = value;
+            }
+        }
+    }
+    private static int[] parseId(String token) {
+        int colon = token.indexOf(':');
+        if (colon < 0) {
+            return new int[]{Integer.parseInt(token), -1};
+        }
+        return new int[]{Integer.parseInt(token.substring(0, colon)), Integer.parseInt(token.substring(colon + 1)) & 0x0F};
+    }
+}
@@ -0,0 +1,71 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.MessageToMessageDecoder;
+
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+public class JavaCompressionDecoder extends MessageToMessageDecoder<ByteBuf> {
+    private final int threshold;
+    private final int maxDataLength;
+    private Inflater inflater;
+    public JavaCompressionDecoder(int threshold) {
+        this(threshold, ProxyConfig.MAX_FRAME_LENGTH * 4);
+    }
+    public JavaCompressionDecoder(int threshold, int maxDataLength) {
+        this.threshold = threshold;
+        this.maxDataLength = maxDataLength;
+    }
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        inflater = ZlibContextPool.acquireInflater();
+    }
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (inflater != null) {
+            ZlibContextPool.releaseInflater(inflater);
+            inflater = null;
+        }
+    }
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        int dataLength = ProtocolUtils.readVarInt(in);
+        if (dataLength == 0) {
+            out.add(in.retainedSlice());
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        if (dataLength < threshold) {
+            throw new CorruptedFrameException("Compressed packet of " + dataLength + " bytes is below threshold " + threshold);
+        }
+        if (dataLength > maxDataLength) {
+            throw new CorruptedFrameException("Compressed packet of " + dataLength + " bytes exceeds limit of " + maxDataLength);
+        }
+        ByteBuf result = ctx.alloc().ioBuffer(dataLength, dataLength);
+        try {
+            inflater.setInput(in.nioBuffer());
+            while (result.isWritable() && !inflater.finished()) {
+                int written = inflater.inflate(result.nioBuffer(result.writerIndex(), result.writableBytes()));
+                if (written == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                result.writerIndex(result.writerIndex() + written);
+            }
+            if (result.isWritable() || !inflater.finished()) {
+                throw new CorruptedFrameException("Compressed packet did not inflate to its declared length of " + dataLength);
+            }
+            in.skipBytes(in.readableBytes());
+            out.add(result);
+        } catch (DataFormatException e) {
+            result.release();
+            throw new CorruptedFrameException("Invalid zlib data from Java client", e);
+        } catch (Exception e) {
+            result.release();
+            throw e;
+        } finally {
+            inflater.reset();
+        }
+    }
+}
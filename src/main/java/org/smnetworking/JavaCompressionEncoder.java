@@ -0,0 +1,144 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+public class JavaCompressionEncoder extends ChannelOutboundHandlerAdapter {
+    private final int threshold;
+    private final int offloadThreshold;
+    private final ArrayDeque<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private boolean flushPending;
+    private Deflater deflater;
+    public JavaCompressionEncoder(int threshold) {
+        this(threshold, ProxyConfig.COMPRESSION_OFFLOAD_THRESHOLD);
+    }
+    public JavaCompressionEncoder(int threshold, int offloadThreshold) {
+        this.threshold = threshold;
+        this.offloadThreshold = offloadThreshold;
+    }
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        deflater = ZlibContextPool.acquireDeflater();
+    }
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        if (deflater != null) {
+            ZlibContextPool.releaseDeflater(deflater);
+            deflater = null;
+        }
+        PendingWrite pending;
+        while ((pending = pendingWrites.poll()) != null) {
+            ReferenceCountUtil.release(pending.result);
+            pending.promise.tryFailure(new IllegalStateException("Compression handler removed"));
+        }
+    }
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!(msg instanceof ByteBuf)) {
+            ctx.write(msg, promise);
+            return;
+        }
+        ByteBuf buf = (ByteBuf) msg;
+        boolean offload = offloadThreshold > 0 && buf.readableBytes() >= offloadThreshold;
+        if (pendingWrites.isEmpty() && !offload) {
+            ctx.write(encode(ctx.alloc(), buf, deflater), promise);
+            return;
+        }
+        PendingWrite pending = new PendingWrite(promise);
+        pendingWrites.add(pending);
+        if (!offload) {
+            pending.result = encode(ctx.alloc(), buf, deflater);
+            return;
+        }
+        OffloadExecutor.INSTANCE.execute(() -> {
+            Deflater offloadDeflater = ZlibContextPool.acquireDeflater();
+            ByteBuf result;
+            try {
+                result = encode(ctx.alloc(), buf, offloadDeflater);
+            } catch (Throwable t) {
+                ctx.executor().execute(() -> {
+                    pendingWrites.remove(pending);
+                    pending.promise.tryFailure(t);
+                    drain(ctx);
+                });
+                return;
+            } finally {
+                ZlibContextPool.releaseDeflater(offloadDeflater);
+            }
+            ctx.executor().execute(() -> {
+                pending.result = result;
+                drain(ctx);
+            });
+        });
+    }
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (pendingWrites.isEmpty()) {
+            ctx.flush();
+        } else {
+            flushPending = true;
+        }
+    }
+    private void drain(ChannelHandlerContext ctx) {
+        boolean wrote = false;
+        while (!pendingWrites.isEmpty() && pendingWrites.peek().result != null) {
+            PendingWrite pending = pendingWrites.poll();
+            ctx.write(pending.result, pending.promise);
+            wrote = true;
+        }
+        if (wrote && flushPending) {
+            flushPending = !pendingWrites.isEmpty();
+            ctx.flush();
+        }
+    }
+    private ByteBuf encode(ByteBufAllocator alloc, ByteBuf msg, Deflater deflater) {
+        try {
+            int dataLength = msg.readableBytes();
+            if (dataLength < threshold) {
+                if (JavaPacketEncoder.hasHeadroom(msg, 1)) {
+                    int markerIndex = msg.readerIndex() - 1;
+                    msg.setByte(markerIndex, 0);
+                    msg.readerIndex(markerIndex);
+                    return msg.retain();
+                }
+                CompositeByteBuf composite = alloc.compositeDirectBuffer(2);
+                composite.addComponent(true, alloc.ioBuffer(1).writeByte(0));
+                composite.addComponent(true, msg.retain());
+                return composite;
+            }
+            ByteBuf out = JavaPacketEncoder.newPacket(alloc, 5 + dataLength / 2);
+            ProtocolUtils.writeVarInt(dataLength, out);
+            deflater.setInput(msg.nioBuffer());
+            deflater.finish();
+            while (!deflater.finished()) {
+                out.ensureWritable(8192);
+                ByteBuffer target = out.nioBuffer(out.writerIndex(), out.writableBytes());
+                out.writerIndex(out.writerIndex() + deflater.deflate(target));
+            }
+            deflater.reset();
+            return out;
+        } finally {
+            msg.release();
+        }
+    }
+    private static final class PendingWrite {
+        private final ChannelPromise promise;
+        private ByteBuf result;
+        private PendingWrite(ChannelPromise promise) {
+            this.promise = promise;
+        }
+    }
+    private static final class OffloadExecutor {
+        private static final ExecutorService INSTANCE = Executors.newFixedThreadPool(ProxyConfig.COMPRESSION_OFFLOAD_THREADS, new DefaultThreadFactory("java-compression", true));
+    }
+}
@@ -1,35 +1,66 @@
 package org.smnetworking;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 
 import java.util.UUID;
 public class JavaConnectionHandler extends ChannelInboundHandlerAdapter {
-    private final String peServerIp;
-    private final int peServerPort;
-    private enum ConnectionState {
+    private final PeSessionDemultiplexer demultiplexer;
+    enum ConnectionState {
         HANDSHAKING,
         STATUS,
         LOGIN,
         PLAY
     }
     private ConnectionState currentState = ConnectionState.HANDSHAKING;
-    public JavaConnectionHandler(String peServerIp, int peServerPort) {
-        this.peServerIp = peServerIp;
-        this.peServerPort = peServerPort;
-        System.out.println("JavaConnectionHandler created for target " + peServerIp + ":" + peServerPort);
+    private PeClient peClient;
+    private boolean loginStarted;
+    public JavaConnectionHandler(PeSessionDemultiplexer demultiplexer) {
+        this.demultiplexer = demultiplexer;
     }
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
-        System.out.println("Java Client connected: " + ctx.channel().remoteAddress());
+        ProxyLog.debug("Java Client connected: " + ctx.channel().remoteAddress());
+        AdmissionController admission = demultiplexer.admission();
+        if (admission != null && !admission.allowConnection(ctx.channel().remoteAddress())) {
+            ProxyLog.debug("Connection rate limit exceeded for " + ctx.channel().remoteAddress());
+            ctx.close();
+            return;
+        }
         super.channelActive(ctx);
     }
     @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (peClient != null) {
+            peClient.shutdown();
+            peClient = null;
+        }
+        super.channelInactive(ctx);
+    }
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (peClient != null && ctx.channel().isWritable()) {
+            peClient.onJavaWritabilityChanged();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+    @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
         ByteBuf packetBuf = (ByteBuf) msg;
         try {
             int packetId = ProtocolUtils.readVarInt(packetBuf);
-            System.out.println("Received Java Packet ID: 0x" + Integer.toHexString(packetId) + " in state: " + currentState + " (Payload readable bytes: " + packetBuf.readableBytes() + ")");
+            if (currentState == ConnectionState.PLAY) {
+                handlePlayPacket(ctx, packetId, packetBuf);
+                return;
+            }
+            if (currentState == ConnectionState.STATUS) {
+                handleStatusPacket(ctx, packetId, packetBuf);
+                return;
+            }
+            if (ProxyLog.isDebugEnabled()) {
+                ProxyLog.debug("Received Java Packet ID: 0x" + Integer.toHexString(packetId) + " in state: " + currentState + " (Payload readable bytes: " + packetBuf.readableBytes() + ")");
+            }
             switch (currentState) {
                 case HANDSHAKING:
                     handleHandshakePacket(ctx, packetId, packetBuf);
@@ -50,9 +81,8 @@ public class JavaConnectionHandler extends ChannelInboundHandlerAdapter {
     }
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        cause.printStackTrace();
+        ProxyLog.error("Java Client connection error, closed.", cause);
         ctx.close();
-        System.err.println("Java Client connection error, closed.");
     }
     private void handleHandshakePacket(ChannelHandlerContext ctx, int packetId, ByteBuf packetBuf) {
         if (packetId == 0x00) {
@@ -61,10 +91,10 @@ public class JavaConnectionHandler extends ChannelInboundHandlerAdapter {
                 String serverAddress = ProtocolUtils.readString(packetBuf);
                 int serverPort = packetBuf.readUnsignedShort();
                 int nextState = ProtocolUtils.readVarInt(packetBuf);
-                System.out.println("Handshake received: Protocol=" + protocolVersion + ", Address=" + serverAddress + ", Port=" + serverPort + ", NextState=" + nextState);
+                ProxyLog.debug("Handshake received: Protocol=" + protocolVersion + ", Address=" + serverAddress + ", Port=" + serverPort + ", NextState=" + nextState);
                 if (protocolVersion != 47) {
-                    System.err.println("Unsupported protocol version: " + protocolVersion + ". Expected 47.");
-                    ByteBuf disconnectPacket = ctx.alloc().buffer();
+                    ProxyLog.warn("Unsupported protocol version: " + protocolVersion + ". Expected 47.");
+                    ByteBuf disconnectPacket = JavaPacketEncoder.newPacket(ctx.alloc());
                     ProtocolUtils.writeVarInt(0x00, disconnectPacket);
                     ProtocolUtils.writeString("{\"text\":\"Unsupported protocol version! Expected 1.8.9 (47). Received " + protocolVersion + "\"}", disconnectPacket);
                     ctx.writeAndFlush(disconnectPacket);
@@ -75,72 +105,142 @@ public class JavaConnectionHandler extends ChannelInboundHandlerAdapter {
                 }
                 if (nextState == 1) {
                     currentState = ConnectionState.STATUS;
-                    System.out.println("Switched state to STATUS");
+                    ProxyLog.debug("Switched state to STATUS");
                 } else if (nextState == 2) {
                     currentState = ConnectionState.LOGIN;
-                    System.out.println("Switched state to LOGIN");
+                    ProxyLog.debug("Switched state to LOGIN");
                 } else {
-                    System.err.println("Invalid next state in Handshake: " + nextState);
+                    ProxyLog.warn("Invalid next state in Handshake: " + nextState);
                     ctx.close();
                 }
             } catch (Exception e) {
-                System.err.println("Error handling Handshake packet: " + e.getMessage());
+                ProxyLog.error("Error handling Handshake packet: " + e.getMessage());
                 ctx.close();
             }
         } else {
-            System.err.println("Logic error: handleHandshakePacket called with unexpected packet ID 0x" + Integer.toHexString(packetId));
+            ProxyLog.warn("Logic error: handleHandshakePacket called with unexpected packet ID 0x" + Integer.toHexString(packetId));
             ctx.close();
         }
     }
     private void handleStatusPacket(ChannelHandlerContext ctx, int packetId, ByteBuf packetBuf) {
         if (packetId == 0x00) {
-            System.out.println("Status Request received.");
+            BackendRegistry backends = demultiplexer.backends();
+            ServerStatusCache statusCache = backends != null ? backends.statusCache() : null;
+            AdmissionController admission = demultiplexer.admission();
+            if (statusCache == null || admission != null && !admission.allowStatus(ctx.channel().remoteAddress())) {
+                ctx.close();
+                return;
+            }
+            ctx.writeAndFlush(statusCache.newStatusResponse(ctx.alloc()), ctx.voidPromise());
         } else if (packetId == 0x01) {
-            System.out.println("Ping received.");
-            if (packetBuf.readableBytes() >= 8) {
-                long payload = packetBuf.readLong();
-                System.out.println("Ping payload: " + payload);
-            } else {
-                System.err.println("Ping packet too short.");
+            if (packetBuf.readableBytes() < 8) {
                 ctx.close();
+                return;
             }
+            ByteBuf pong = JavaPacketEncoder.newPacket(ctx.alloc(), 9);
+            ProtocolUtils.writeVarInt(0x01, pong);
+            pong.writeLong(packetBuf.readLong());
+            ctx.writeAndFlush(pong).addListener(ChannelFutureListener.CLOSE);
         } else {
-            System.err.println("Unexpected packet ID 0x" + Integer.toHexString(packetId) + " in STATUS state.");
+            ProxyLog.warn("Unexpected packet ID 0x" + Integer.toHexString(packetId) + " in STATUS state.");
             ctx.close();
         }
     }
     private void handleLoginPacket(ChannelHandlerContext ctx, int packetId, ByteBuf packetBuf) {
-        if (packetId == 0x00) {
+        if (packetId == 0x00 && !loginStarted) {
+            loginStarted = true;
             try {
-                String rawPlayerName = ProtocolUtils.readString(packetBuf);
-                System.out.println("Login Start received: Raw Player Name=" + rawPlayerName);
+                String rawPlayerName = ProtocolUtils.readString(packetBuf, StringInternCache.SHARED);
+                ProxyLog.info("Login Start received: Raw Player Name=" + rawPlayerName);
                 String cleanedPlayerName = rawPlayerName.replace("_", "");
                 if (cleanedPlayerName.isEmpty()) {
                     cleanedPlayerName = "Player";
-                    System.out.println("Player name was empty after cleanup, using default: " + cleanedPlayerName);
+                    ProxyLog.info("Player name was empty after cleanup, using default: " + cleanedPlayerName);
                 }
                 String playerName = cleanedPlayerName;
-                System.out.println("Using cleaned Player Name=" + playerName);
+                ProxyLog.info("Using cleaned Player Name=" + playerName);
                 UUID playerId = UUID.randomUUID();
-                PeClient peClient = new PeClient(peServerIp, peServerPort, playerName, playerId, ctx.channel());
-                peClient.connect();
-                ByteBuf successPacket = ctx.alloc().buffer();
-                ProtocolUtils.writeVarInt(0x02, successPacket);
-                ProtocolUtils.writeString(playerId.toString(), successPacket);
-                ProtocolUtils.writeString(playerName, successPacket);
-                ctx.writeAndFlush(successPacket);
-                currentState = ConnectionState.PLAY;
-                System.out.println("Java Client logged in as " + playerName + ". Switched state to PLAY.");
+                AdmissionController admission = demultiplexer.admission();
+                if (admission == null) {
+                    startSession(ctx, playerName, playerId, null);
+                } else if (!admission.admit(ctx.channel(), () -> startSession(ctx, playerName, playerId, admission))) {
+                    ProxyLog.warn("Admission queue full, rejecting " + playerName + " from " + ctx.channel().remoteAddress());
+                    disconnect(ctx, "Server is busy, please try again in a moment.");
+                } else if (peClient == null) {
+                    ProxyLog.info(playerName + " queued for admission (" + admission.getQueued() + " waiting).");
+                }
             } catch (Exception e) {
-                System.err.println("Error handling Login Start packet: " + e.getMessage());
+                ProxyLog.error("Error handling Login Start packet: " + e.getMessage());
                 ctx.close();
             }
         } else {
-            System.err.println("Unexpected packet ID 0x" + Integer.toHexString(packetId) + " in LOGIN state.");
+            ProxyLog.warn("Unexpected packet ID 0x" + Integer.toHexString(packetId) + " in LOGIN state.");
             ctx.close();
         }
     }
+    private void startSession(ChannelHandlerContext ctx, String playerName, UUID playerId, AdmissionController admission) {
+        PeBackend backend = demultiplexer.backends().select();
+        if (backend == null) {
+            ProxyLog.warn("No healthy PE backend for " + playerName + ", rejecting login.");
+            if (admission != null) {
+                admission.release();
+            }
+            disconnect(ctx, "No PE server is available right now, please try again later.");
+            return;
+        }
+        try {
+            PeConnectionPool pool = backend.connectionPool();
+            PeClient pooled = pool != null ? pool.acquire(ctx.channel().eventLoop()) : null;
+            if (pooled != null) {
+                peClient = pooled;
+                peClient.holdAdmission(admission);
+                peClient.adopt(ctx.channel(), playerName, playerId);
+            } else {
+                peClient = new PeClient(backend, playerName, playerId, ctx.channel(), demultiplexer);
+                peClient.holdAdmission(admission);
+                peClient.connect();
+            }
+        } catch (RuntimeException e) {
+            ProxyLog.error("Error starting PE session for " + playerName + ": " + e.getMessage());
+            if (peClient != null) {
+                peClient.shutdown();
+                peClient = null;
+            } else if (admission != null) {
+                admission.release();
+            }
+            ctx.close();
+            return;
+        }
+        enableCompression(ctx, ProxyConfig.COMPRESSION_THRESHOLD);
+        ByteBuf successPacket = JavaPacketEncoder.newPacket(ctx.alloc());
+        ProtocolUtils.writeVarInt(0x02, successPacket);
+        ProtocolUtils.writeString(playerId.toString(), successPacket);
+        ProtocolUtils.writeString(playerName, successPacket);
+        ctx.writeAndFlush(successPacket);
+        currentState = ConnectionState.PLAY;
+        ProxyLog.info("Java Client logged in as " + playerName + " on PE backend " + backend.describe() + ". Switched state to PLAY.");
+    }
+    private void disconnect(ChannelHandlerContext ctx, String reason) {
+        ByteBuf disconnectPacket = JavaPacketEncoder.newPacket(ctx.alloc());
+        ProtocolUtils.writeVarInt(0x00, disconnectPacket);
+        ProtocolUtils.writeString("{\"text\":\"" + reason + "\"}", disconnectPacket);
+        ctx.writeAndFlush(disconnectPacket).addListener(ChannelFutureListener.CLOSE);
+    }
+    private void enableCompression(ChannelHandlerContext ctx, int threshold) {
+        if (threshold < 0) {
+            return;
+        }
+        ByteBuf setCompressionPacket = JavaPacketEncoder.newPacket(ctx.alloc(), 8);
+        ProtocolUtils.writeVarInt(0x03, setCompressionPacket);
+        ProtocolUtils.writeVarInt(threshold, setCompressionPacket);
+        ctx.write(setCompressionPacket);
+        ctx.pipeline().addAfter("frameDecoder", "decompress", new JavaCompressionDecoder(threshold));
+        ctx.pipeline().addAfter("frameEncoder", "compress", new JavaCompressionEncoder(threshold));
+        ProxyLog.info("Enabled compression with threshold " + threshold);
+    }
     private void handlePlayPacket(ChannelHandlerContext ctx, int packetId, ByteBuf packetBuf) {
-        System.out.println("Received Play Packet ID: 0x" + Integer.toHexString(packetId) + " (needs translation)");
+        if (peClient != null) {
+            peClient.translateJavaPacket(currentState, packetId, packetBuf);
+        }
     }
 }
@@ -3,49 +3,71 @@ import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.TooLongFrameException;
 
 import java.util.List;
 public class JavaPacketDecoder extends ByteToMessageDecoder {
+    private final int maxFrameLength;
+    public JavaPacketDecoder() {
+        this(ProxyConfig.MAX_FRAME_LENGTH);
+    }
+    public JavaPacketDecoder(int maxFrameLength) {
+        this.maxFrameLength = maxFrameLength;
+    }
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        if (in.readableBytes() > 0) {
-            int bytesToDump = Math.min(in.readableBytes(), 16);
-            byte[] dump = new byte[bytesToDump];
-            in.getBytes(in.readerIndex(), dump);
-            System.out.print("--- Raw incoming bytes (" + bytesToDump + "): ");
-            for (byte b : dump) {
-                System.out.printf("%02X ", b);
-            }
-            System.out.println(" ---");
+        int readerIndex = in.readerIndex();
+        int readable = in.readableBytes();
+        if (readable < 1) {
+            return;
         }
-        in.markReaderIndex();
         int packetLength;
-        try {
-            packetLength = ProtocolUtils.readVarInt(in);
-        } catch (Exception e) {
-            in.resetReaderIndex();
-            return;
+        int headerLength;
+        byte b = in.getByte(readerIndex);
+        if (b >= 0) {
+            packetLength = b;
+            headerLength = 1;
+        } else {
+            if (readable < 2) {
+                return;
+            }
+            packetLength = b & 0x7F;
+            b = in.getByte(readerIndex + 1);
+            if (b >= 0) {
+                packetLength |= b << 7;
+                headerLength = 2;
+            } else {
+                if (readable < 3) {
+                    return;
+                }
+                packetLength |= (b & 0x7F) << 7;
+                b = in.getByte(readerIndex + 2);
+                if (b < 0) {
+                    throw new CorruptedFrameException("Packet length VarInt is longer than 3 bytes");
+                }
+                packetLength |= b << 14;
+                headerLength = 3;
+            }
+        }
+        if (packetLength == 0) {
+            throw new CorruptedFrameException("Empty packet");
+        }
+        if (packetLength > maxFrameLength) {
+            throw new TooLongFrameException("Packet length " + packetLength + " exceeds limit of " + maxFrameLength);
         }
-        if (in.readableBytes() < packetLength) {
-            in.resetReaderIndex();
+        if (readable - headerLength < packetLength) {
             return;
         }
-        int initialReaderIndexForPacket = in.readerIndex();
-        int packetId = ProtocolUtils.readVarInt(in);
-        int bytesReadForId = in.readerIndex() - initialReaderIndexForPacket;
-        int dataLength = packetLength - bytesReadForId;
-        ByteBuf packetData = in.readBytes(dataLength);
-        in.readerIndex(initialReaderIndexForPacket);
-        ByteBuf fullPacketWithId = in.readBytes(packetLength);
-        out.add(fullPacketWithId);
+        out.add(in.retainedSlice(readerIndex + headerLength, packetLength));
+        in.readerIndex(readerIndex + headerLength + packetLength);
     }
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
-        if (cause instanceof CorruptedFrameException) {
-            System.err.println("Corrupted frame from Java client: " + cause.getMessage());
+        if (cause instanceof CorruptedFrameException || cause instanceof TooLongFrameException) {
+            ProxyLog.warn("Corrupted frame from Java client: " + cause.getMessage());
             ctx.close();
         } else {
             super.exceptionCaught(ctx, cause);
         }
     }
-}
\ No newline at end of file
+}
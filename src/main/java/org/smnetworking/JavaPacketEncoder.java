@@ -1,14 +1,53 @@
 package org.smnetworking;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.handler.codec.MessageToByteEncoder;
-public class JavaPacketEncoder extends MessageToByteEncoder<ByteBuf> {
+import io.netty.handler.codec.MessageToMessageEncoder;
+
+import java.util.List;
+public class JavaPacketEncoder extends MessageToMessageEncoder<ByteBuf> {
+    public static final int MAX_HEADER_LENGTH = 3;
+    // One extra byte lets JavaCompressionEncoder prepend the "uncompressed" marker in place as well.
+    public static final int HEADROOM = MAX_HEADER_LENGTH + 1;
+    // The largest frame a 3 byte length can describe. Giving newPacket buffers exactly this max capacity is also what
+    // marks them as owning their headroom; any other buffer is framed with a separate header and never written before
+    // its reader index.
+    private static final int PACKET_MAX_CAPACITY = HEADROOM + (1 << 7 * MAX_HEADER_LENGTH) - 1;
+    public static ByteBuf newPacket(ByteBufAllocator alloc) {
+        return newPacket(alloc, 256);
+    }
+    public static ByteBuf newPacket(ByteBufAllocator alloc, int initialBodyCapacity) {
+        ByteBuf buf = alloc.ioBuffer(HEADROOM + initialBodyCapacity, PACKET_MAX_CAPACITY);
+        buf.setIndex(HEADROOM, HEADROOM);
+        return buf;
+    }
+    // True when buf came from newPacket, is not a view of another buffer, and still has length bytes of unused headroom.
+    static boolean hasHeadroom(ByteBuf buf, int length) {
+        int readerIndex = buf.readerIndex();
+        return buf.maxCapacity() == PACKET_MAX_CAPACITY && buf.unwrap() == null && !buf.isReadOnly()
+                && readerIndex >= length && readerIndex <= HEADROOM;
+    }
     @Override
-    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception {
+    protected void encode(ChannelHandlerContext ctx, ByteBuf msg, List<Object> out) throws Exception {
         int bodyLength = msg.readableBytes();
         int headerLength = ProtocolUtils.getVarIntSize(bodyLength);
-        out.ensureWritable(headerLength + bodyLength);
-        ProtocolUtils.writeVarInt(bodyLength, out);
-        out.writeBytes(msg);
+        if (hasHeadroom(msg, headerLength)) {
+            int headerIndex = msg.readerIndex() - headerLength;
+            setVarInt(msg, headerIndex, bodyLength);
+            msg.readerIndex(headerIndex);
+            out.add(msg.retain());
+            return;
+        }
+        ByteBuf header = ctx.alloc().ioBuffer(headerLength);
+        ProtocolUtils.writeVarInt(bodyLength, header);
+        out.add(header);
+        out.add(msg.retain());
+    }
+    private static void setVarInt(ByteBuf buf, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf.setByte(index++, (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf.setByte(index, value);
     }
-}
\ No newline at end of file
+}
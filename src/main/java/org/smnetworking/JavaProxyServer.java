@@ -1,3 +1,106 @@
 package org.smnetworking;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+// Owns everything the proxy runs: the event loops, the shared PE sockets, the backend registry and its pools,
+// admission control, metrics and the Java listeners. start() brings them up in dependency order, stop() reverses it.
 public class JavaProxyServer {
+    private final int port;
+    private final List<InetSocketAddress> backendAddresses;
+    private final Transport transport;
+    private final List<Channel> listeners = new ArrayList<>();
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private PeSessionDemultiplexer demultiplexer;
+    private BackendRegistry backends;
+    private AdmissionController admission;
+    private MetricsServer metricsServer;
+    public JavaProxyServer(int port, List<InetSocketAddress> backendAddresses) {
+        this.port = port;
+        this.backendAddresses = backendAddresses;
+        this.transport = Transport.select();
+    }
+    public void start() throws InterruptedException {
+        ProxyLog.info("Using transport: " + transport.describe());
+        bossGroup = transport.newEventLoopGroup(ProxyConfig.BOSS_THREADS);
+        workerGroup = transport.newEventLoopGroup(ProxyConfig.WORKER_THREADS);
+        ProxyLog.info("Using " + ProxyConfig.WORKER_THREADS + " shared worker event loops for Java and PE sessions");
+        demultiplexer = new PeSessionDemultiplexer(workerGroup, transport);
+        ProxyMetrics.monitorEventLoops(workerGroup);
+        backends = new BackendRegistry(backendAddresses, demultiplexer, BackendRegistry.parseRouting(ProxyConfig.BACKEND_ROUTING));
+        for (PeBackend backend : backends.backends()) {
+            ProxyLog.info("Targeting PE 0.8.1 server at " + backend.describe());
+            if (ProxyConfig.PE_POOL_SIZE > 0) {
+                backend.setConnectionPool(new PeConnectionPool(backend, demultiplexer, workerGroup));
+            }
+        }
+        demultiplexer.setBackends(backends);
+        ProxyMetrics.monitorBackends(backends);
+        admission = new AdmissionController(ProxyConfig.ADMISSION_MAX_HANDSHAKES, ProxyConfig.ADMISSION_QUEUE_SIZE);
+        demultiplexer.setAdmission(admission);
+        ProxyMetrics.monitorAdmission(admission);
+        metricsServer = new MetricsServer();
+        demultiplexer.start();
+        backends.start(workerGroup);
+        admission.start(workerGroup.next());
+        metricsServer.start();
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(transport.serverChannelClass())
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    public void initChannel(SocketChannel ch) throws Exception {
+                        ch.pipeline().addLast("flushConsolidation", new FlushConsolidationHandler(ProxyConfig.EXPLICIT_FLUSH_AFTER_FLUSHES, true));
+                        ch.pipeline().addLast("frameDecoder", new JavaPacketDecoder());
+                        ch.pipeline().addLast("frameEncoder", new JavaPacketEncoder());
+                        ch.pipeline().addLast("handler", new JavaConnectionHandler(demultiplexer));
+                    }
+                })
+                .option(ChannelOption.SO_BACKLOG, 128)
+                .childOption(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(ProxyConfig.JAVA_WRITE_LOW_WATER_MARK, ProxyConfig.JAVA_WRITE_HIGH_WATER_MARK));
+        transport.configureServer(b);
+        for (int i = 0; i < transport.listenerCount(); i++) {
+            listeners.add(b.bind(port).sync().channel());
+        }
+        ProxyLog.info("Proxy server started successfully on port " + port);
+    }
+    public void awaitTermination() throws InterruptedException {
+        if (!listeners.isEmpty()) {
+            listeners.get(0).closeFuture().sync();
+        }
+    }
+    public void stop() {
+        for (Channel listener : listeners) {
+            listener.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (backends != null) {
+            backends.stop();
+        }
+        if (demultiplexer != null) {
+            demultiplexer.shutdown();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+        ProxyLog.info("Proxy server shut down.");
+    }
+    public BackendRegistry backends() {
+        return backends;
+    }
 }
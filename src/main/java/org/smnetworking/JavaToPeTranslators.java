@@ -0,0 +1,75 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.DecoderException;
+final class JavaToPeTranslators {
+    private static final JavaConnectionHandler.ConnectionState PLAY = JavaConnectionHandler.ConnectionState.PLAY;
+    private JavaToPeTranslators() {
+    }
+    static void register(TranslatorRegistry registry) {
+        registry.registerJavaToPe(PLAY, 0x00, JavaToPeTranslators::keepAlive);
+        registry.registerJavaToPe(PLAY, 0x01, JavaToPeTranslators::chat);
+        registry.registerJavaToPe(PLAY, 0x03, JavaToPeTranslators::player);
+        registry.registerJavaToPe(PLAY, 0x04, JavaToPeTranslators::playerPosition);
+        registry.registerJavaToPe(PLAY, 0x05, JavaToPeTranslators::playerLook);
+        registry.registerJavaToPe(PLAY, 0x06, JavaToPeTranslators::playerPositionAndLook);
+        registry.registerJavaToPe(PLAY, 0x0A, JavaToPeTranslators::animation);
+    }
+    private static void keepAlive(PeClient session, ByteBuf in) {
+    }
+    private static void chat(PeClient session, ByteBuf in) {
+        int length = ProtocolUtils.readVarInt(in);
+        if (length < 0 || length > in.readableBytes()) {
+            throw new DecoderException("Chat message length out of bounds: " + length);
+        }
+        ByteBuf out = session.newPePacket(PeProtocol.MESSAGE, 4 + length);
+        out.writeShort(0);
+        out.writeShort(length);
+        out.writeBytes(in, length);
+        session.sendToPe(out);
+    }
+    private static void player(PeClient session, ByteBuf in) {
+    }
+    private static void playerPosition(PeClient session, ByteBuf in) {
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double z = in.readDouble();
+        session.updatePosition(x, y, z);
+        session.getMovement().playerMoved();
+    }
+    private static void playerLook(PeClient session, ByteBuf in) {
+        float yaw = in.readFloat();
+        float pitch = in.readFloat();
+        session.updateRotation(yaw, pitch);
+        session.getMovement().playerMoved();
+    }
+    private static void playerPositionAndLook(PeClient session, ByteBuf in) {
+        double x = in.readDouble();
+        double y = in.readDouble();
+        double z = in.readDouble();
+        float yaw = in.readFloat();
+        float pitch = in.readFloat();
+        session.updatePosition(x, y, z);
+        session.updateRotation(yaw, pitch);
+        session.getMovement().playerMoved();
+    }
+    static void sendMovePlayer(PeClient session) {
+        if (session.getPeState() != PeClient.PeConnectionState.CONNECTED) {
+            return;
+        }
+        ByteBuf out = session.newPePacket(PeProtocol.MOVE_PLAYER, 28);
+        out.writeInt(session.getPeEntityId());
+        out.writeFloat((float) session.getX());
+        out.writeFloat((float) session.getY() + PeProtocol.PLAYER_EYE_HEIGHT);
+        out.writeFloat((float) session.getZ());
+        out.writeFloat(session.getYaw());
+        out.writeFloat(session.getPitch());
+        out.writeFloat(session.getYaw());
+        session.sendToPe(out, RakNetSession.UNRELIABLE_SEQUENCED);
+    }
+    private static void animation(PeClient session, ByteBuf in) {
+        ByteBuf out = session.newPePacket(PeProtocol.ANIMATE, 5);
+        out.writeByte(1);
+        out.writeInt(session.getPeEntityId());
+        session.sendToPe(out);
+    }
+}
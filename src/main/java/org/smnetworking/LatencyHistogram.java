@@ -0,0 +1,101 @@
+package org.smnetworking;
+import java.util.concurrent.atomic.LongAdder;
+// Log-linear buckets in the style of HdrHistogram: 8 linear sub-buckets per power of two, about 12% relative error.
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int GROUPS = 40;
+    private final LongAdder[] buckets = new LongAdder[GROUPS * SUB_BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[Math.min(index(value), buckets.length - 1)].increment();
+        count.increment();
+        sum.add(value);
+    }
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+    // Exclusive upper bound of the values counted in bucket i.
+    static long upperBound(int i) {
+        if (i < SUB_BUCKETS) {
+            return i + 1;
+        }
+        int group = i / SUB_BUCKETS;
+        long lower = (long) (SUB_BUCKETS + i % SUB_BUCKETS) << (group - 1);
+        return lower + (1L << (group - 1));
+    }
+    long[] snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+    long getCount() {
+        return count.sum();
+    }
+    long getSum() {
+        return sum.sum();
+    }
+    long quantile(double q) {
+        long[] counts = snapshot();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i) - 1;
+            }
+        }
+        return upperBound(counts.length - 1) - 1;
+    }
+    // Cumulative counts at each power-of-two boundary from 2^minExponent to 2^maxExponent, for Prometheus "le" buckets.
+    void appendPrometheus(StringBuilder out, String name, String labels, int minExponent, int maxExponent, double unitScale) {
+        long[] counts = snapshot();
+        long cumulative = 0;
+        int bucket = 0;
+        String separator = labels.isEmpty() ? "" : ",";
+        for (int exponent = minExponent; exponent <= maxExponent; exponent++) {
+            long bound = 1L << exponent;
+            while (bucket < counts.length && upperBound(bucket) <= bound) {
+                cumulative += counts[bucket++];
+            }
+            out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"").append(bound * unitScale).append("\"} ").append(cumulative).append('\n');
+        }
+        while (bucket < counts.length) {
+            cumulative += counts[bucket++];
+        }
+        out.append(name).append("_bucket{").append(labels).append(separator).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+        out.append(name).append("_sum");
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(getSum() * unitScale).append('\n');
+        out.append(name).append("_count");
+        if (!labels.isEmpty()) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ').append(cumulative).append('\n');
+    }
+}
@@ -0,0 +1,59 @@
+package org.smnetworking;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+public final class MetricsServer {
+    private static final String JMX_NAME = "org.smnetworking:type=ProxyMetrics";
+    private HttpServer httpServer;
+    private ExecutorService executor;
+    public void start() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(ProxyMetrics.INSTANCE, new ObjectName(JMX_NAME));
+        } catch (Exception e) {
+            ProxyLog.warn("Could not register JMX metrics bean: " + e.getMessage());
+        }
+        if (ProxyConfig.METRICS_PORT < 0) {
+            return;
+        }
+        try {
+            httpServer = HttpServer.create(new InetSocketAddress(ProxyConfig.METRICS_HOST, ProxyConfig.METRICS_PORT), 0);
+        } catch (IOException e) {
+            ProxyLog.error("Could not start metrics endpoint on " + ProxyConfig.METRICS_HOST + ":" + ProxyConfig.METRICS_PORT, e);
+            return;
+        }
+        // Scrapes run on their own thread so formatting never lands on an event loop.
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "proxy-metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(executor);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = ProxyMetrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        httpServer.start();
+        ProxyLog.info("Metrics endpoint listening on http://" + ProxyConfig.METRICS_HOST + ":" + ProxyConfig.METRICS_PORT + "/metrics");
+    }
+    public void stop() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            executor.shutdownNow();
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(JMX_NAME));
+        } catch (Exception ignored) {
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.EventLoop;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.concurrent.TimeUnit;
+// Keeps only the latest position and rotation per mover and emits it once per movement tick, in both directions:
+// the player's own movement towards the PE server and PE entity movement towards the Java client. A move that
+// jumps further than the immediate thresholds (teleports, knockback) is sent straight away instead.
+final class MovementCoalescer {
+    private static final double IMMEDIATE_DISTANCE_SQ = (double) ProxyConfig.MOVEMENT_IMMEDIATE_DISTANCE * ProxyConfig.MOVEMENT_IMMEDIATE_DISTANCE;
+    private static final float IMMEDIATE_ROTATION = ProxyConfig.MOVEMENT_IMMEDIATE_ROTATION;
+    private static final boolean COALESCING = ProxyConfig.MOVEMENT_TICK_MILLIS > 0;
+    private final PeClient session;
+    private final IntObjectHashMap<EntityMove> entityMoves = new IntObjectHashMap<>();
+    private final EntityMove player = new EntityMove();
+    private int dirtyEntities;
+    private ScheduledFuture<?> tickTask;
+    MovementCoalescer(PeClient session) {
+        this.session = session;
+    }
+    // Started once the PE session is in game; movement seen before that is held and goes out on the first tick.
+    void start(EventLoop loop) {
+        if (!COALESCING) {
+            if (player.dirty) {
+                sendPlayerMove();
+            }
+            return;
+        }
+        if (tickTask == null) {
+            tickTask = loop.scheduleAtFixedRate(this::tick, 0, ProxyConfig.MOVEMENT_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    void stop() {
+        if (tickTask != null) {
+            tickTask.cancel(false);
+            tickTask = null;
+        }
+        clearEntities();
+    }
+    // Called after the session's position or rotation was updated from a Java movement packet.
+    void playerMoved() {
+        if (!player.update((float) session.getX(), (float) session.getY(), (float) session.getZ(), session.getYaw(), session.getPitch())
+                || session.getPeState() != PeClient.PeConnectionState.CONNECTED) {
+            return;
+        }
+        if (!COALESCING || player.exceedsImmediateThreshold()) {
+            sendPlayerMove();
+        }
+    }
+    // Records the position the Java client was just told to spawn the entity at, so the moves that follow are
+    // coalesced against it instead of the first one always going out as a teleport.
+    void entitySpawned(int javaEntityId, float x, float y, float z, float yaw, float pitch) {
+        entityRemoved(javaEntityId);
+        EntityMove move = new EntityMove();
+        move.update(x, y, z, yaw, pitch);
+        move.markSent();
+        entityMoves.put(javaEntityId, move);
+    }
+    void entityMoved(int javaEntityId, float x, float y, float z, float yaw, float pitch) {
+        EntityMove move = entityMoves.get(javaEntityId);
+        if (move == null) {
+            move = new EntityMove();
+            entityMoves.put(javaEntityId, move);
+        }
+        boolean wasDirty = move.dirty;
+        if (!move.update(x, y, z, yaw, pitch)) {
+            return;
+        }
+        if (!COALESCING || move.exceedsImmediateThreshold()) {
+            if (wasDirty) {
+                dirtyEntities--;
+            }
+            sendEntityTeleport(javaEntityId, move);
+        } else if (!wasDirty) {
+            dirtyEntities++;
+        }
+    }
+    void clearEntities() {
+        entityMoves.clear();
+        dirtyEntities = 0;
+    }
+    void entityRemoved(int javaEntityId) {
+        EntityMove move = entityMoves.remove(javaEntityId);
+        if (move != null && move.dirty) {
+            dirtyEntities--;
+        }
+    }
+    private void tick() {
+        if (player.dirty) {
+            sendPlayerMove();
+        }
+        if (dirtyEntities == 0) {
+            return;
+        }
+        for (IntObjectHashMap.PrimitiveEntry<EntityMove> entry : entityMoves.entries()) {
+            EntityMove move = entry.value();
+            if (move.dirty) {
+                sendEntityTeleport(entry.key(), move);
+            }
+        }
+        dirtyEntities = 0;
+    }
+    private void sendPlayerMove() {
+        player.markSent();
+        JavaToPeTranslators.sendMovePlayer(session);
+    }
+    private void sendEntityTeleport(int javaEntityId, EntityMove move) {
+        move.markSent();
+        ByteBuf teleport = session.newJavaPacket(0x18, 5 + 12 + 3);
+        ProtocolUtils.writeVarInt(javaEntityId, teleport);
+        teleport.writeInt((int) Math.floor(move.x * 32));
+        teleport.writeInt((int) Math.floor(move.y * 32));
+        teleport.writeInt((int) Math.floor(move.z * 32));
+        teleport.writeByte((int) (move.yaw * 256 / 360));
+        teleport.writeByte((int) (move.pitch * 256 / 360));
+        teleport.writeBoolean(true);
+        session.sendToJava(teleport);
+    }
+    private static final class EntityMove {
+        private float x;
+        private float y;
+        private float z;
+        private float yaw;
+        private float pitch;
+        private float sentX;
+        private float sentY;
+        private float sentZ;
+        private float sentYaw;
+        private boolean sent;
+        private boolean dirty;
+        // Returns false when nothing changed, which is most bare Player packets and idle entity updates.
+        boolean update(float x, float y, float z, float yaw, float pitch) {
+            if (x == this.x && y == this.y && z == this.z && yaw == this.yaw && pitch == this.pitch && (dirty || sent)) {
+                return false;
+            }
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.yaw = yaw;
+            this.pitch = pitch;
+            dirty = true;
+            return true;
+        }
+        boolean exceedsImmediateThreshold() {
+            if (!sent) {
+                return true;
+            }
+            float dx = x - sentX;
+            float dy = y - sentY;
+            float dz = z - sentZ;
+            float dYaw = Math.abs(yaw - sentYaw) % 360;
+            return dx * dx + dy * dy + dz * dz > IMMEDIATE_DISTANCE_SQ || Math.min(dYaw, 360 - dYaw) > IMMEDIATE_ROTATION;
+        }
+        void markSent() {
+            sentX = x;
+            sentY = y;
+            sentZ = z;
+            sentYaw = yaw;
+            sent = true;
+            dirty = false;
+        }
+    }
+}
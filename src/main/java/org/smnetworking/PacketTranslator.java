@@ -0,0 +1,6 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+@FunctionalInterface
+public interface PacketTranslator {
+    void translate(PeClient session, ByteBuf in);
+}
@@ -0,0 +1,69 @@
+package org.smnetworking;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+// One PE server behind the proxy: its resolved address, the unconnected-ping probe that doubles as its health
+// check, its optional pool of pre-warmed sessions and the number of players currently routed to it.
+public class PeBackend {
+    private final InetSocketAddress address;
+    private final ServerStatusCache statusCache;
+    private final AtomicInteger sessions = new AtomicInteger();
+    private PeConnectionPool connectionPool;
+    private volatile boolean drainRequested;
+    private boolean reportedHealthy = true;
+    PeBackend(InetSocketAddress address, PeSessionDemultiplexer demultiplexer) {
+        this.address = address;
+        this.statusCache = new ServerStatusCache(demultiplexer, address);
+    }
+    public InetSocketAddress address() {
+        return address;
+    }
+    public String describe() {
+        return address.getHostString() + ":" + address.getPort();
+    }
+    public ServerStatusCache statusCache() {
+        return statusCache;
+    }
+    void setConnectionPool(PeConnectionPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+    public PeConnectionPool connectionPool() {
+        return connectionPool;
+    }
+    public boolean isHealthy() {
+        return statusCache.isHealthy();
+    }
+    // New logins and pool refills only go to backends that answer pings and have not been drained by hand.
+    public boolean isAcceptingSessions() {
+        return !drainRequested && statusCache.isHealthy();
+    }
+    public boolean isDrainRequested() {
+        return drainRequested;
+    }
+    public void setDrainRequested(boolean drainRequested) {
+        this.drainRequested = drainRequested;
+    }
+    public long getRttNanos() {
+        return statusCache.getRttNanos();
+    }
+    public int getSessions() {
+        return sessions.get();
+    }
+    void sessionOpened() {
+        sessions.incrementAndGet();
+    }
+    void sessionClosed() {
+        sessions.decrementAndGet();
+    }
+    // Called from the registry's health task only, so the transition log is written once per change.
+    void checkHealth() {
+        boolean healthy = statusCache.isHealthy();
+        if (healthy != reportedHealthy) {
+            reportedHealthy = healthy;
+            if (healthy) {
+                ProxyLog.info("PE backend " + describe() + " is healthy again, accepting new sessions.");
+            } else {
+                ProxyLog.warn("PE backend " + describe() + " stopped answering pings, draining it (" + sessions.get() + " sessions left).");
+            }
+        }
+    }
+}
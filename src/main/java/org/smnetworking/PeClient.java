@@ -1,23 +1,29 @@
 package org.smnetworking;
-import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.DatagramPacket;
-import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.util.concurrent.ScheduledFuture;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 public class PeClient {
-    private final String peServerIp;
-    private final int peServerPort;
-    private final String playerName;
-    private final UUID playerId;
-    private final Channel javaClientChannel;
-    private EventLoopGroup group;
+    private final PeBackend backend;
+    private boolean countedOnBackend;
+    private String playerName;
+    private UUID playerId;
+    private Channel javaClientChannel;
+    private final EventLoop eventLoop;
+    private final PeConnectionPool pool;
+    private AdmissionController admission;
+    private boolean handshakeComplete;
+    private long handshakeCompletedNanos;
+    private final PeSessionDemultiplexer demultiplexer;
+    private PeSocket peSocket;
     private Channel peChannel;
     private InetSocketAddress peServerAddress;
+    private long sessionKey;
     enum PeConnectionState {
         DISCONNECTED,
         CONNECTING_1_SENT,
@@ -27,107 +33,627 @@ public class PeClient {
         CONNECTED
     }
     private PeConnectionState peState = PeConnectionState.DISCONNECTED;
-    private static final byte[] RAKNET_MAGIC = {(byte) 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0x00, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0x12, (byte) 0x34, (byte) 0x56, (byte) 0x78};
-    private static final byte RAKNET_PROTOCOL_VERSION = 0x05;
-    private static final short RAKNET_MTU = 1492;
+    private static final short[] MTU_CANDIDATES = {1492, 1200, 576};
+    private static final int MIN_MTU = 576;
     private long clientGuid;
-    public PeClient(String peServerIp, int peServerPort, String playerName, UUID playerId, Channel javaClientChannel) {
-        this.peServerIp = peServerIp;
-        this.peServerPort = peServerPort;
+    private RakNetSession rakNetSession;
+    private int mtuCandidateIndex;
+    private int handshakeAttempt;
+    private ScheduledFuture<?> handshakeTimeout;
+    private int peEntityId;
+    private int javaEntityId;
+    private final EntityIdMap entityIds = new EntityIdMap();
+    private final MovementCoalescer movement = new MovementCoalescer(this);
+    private final ChunkStreamer chunkStreamer = new ChunkStreamer(this);
+    private double x;
+    private double y;
+    private double z;
+    private float yaw;
+    private float pitch;
+    private ChunkCache chunkCache;
+    private int traceGeneration = -1;
+    private boolean traced;
+    private int[] traceSamples;
+    private final long[] requestedChunks = new long[(PeProtocol.WORLD_CHUNKS * PeProtocol.WORLD_CHUNKS + 63) >>> 6];
+    private int centerChunkX = Integer.MIN_VALUE;
+    private int centerChunkZ = Integer.MIN_VALUE;
+    private final ArrayDeque<ByteBuf> deferredPackets = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuf> deferredWorldData = new ArrayDeque<>();
+    private long deferredBytes;
+    private boolean worldDataShed;
+    private boolean javaReadPaused;
+    public PeClient(PeBackend backend, String playerName, UUID playerId, Channel javaClientChannel, PeSessionDemultiplexer demultiplexer) {
+        this(backend, playerName, playerId, javaClientChannel, javaClientChannel.eventLoop(), demultiplexer, null);
+    }
+    // Pooled sessions run the RakNet handshake with no Java client attached and wait in the pool until adopt().
+    PeClient(PeBackend backend, EventLoop eventLoop, PeSessionDemultiplexer demultiplexer, PeConnectionPool pool) {
+        this(backend, null, null, null, eventLoop, demultiplexer, pool);
+    }
+    private PeClient(PeBackend backend, String playerName, UUID playerId, Channel javaClientChannel, EventLoop eventLoop, PeSessionDemultiplexer demultiplexer, PeConnectionPool pool) {
+        this.backend = backend;
         this.playerName = playerName;
         this.playerId = playerId;
         this.javaClientChannel = javaClientChannel;
-        this.peServerAddress = new InetSocketAddress(peServerIp, peServerPort);
+        this.eventLoop = eventLoop;
+        this.demultiplexer = demultiplexer;
+        this.pool = pool;
+        this.peServerAddress = backend.address();
+        if (javaClientChannel != null) {
+            countOnBackend();
+        }
         this.clientGuid = ProtocolUtils.generateClientGuid();
         this.serverGuid = 0;
-        this.agreedMtu = RAKNET_MTU;
+        this.agreedMtu = MTU_CANDIDATES[0];
     }
     private long serverGuid;
     private short agreedMtu;
     public void connect() {
-        System.out.println("Attempting to connect to PE server at " + peServerAddress);
-        group = new NioEventLoopGroup();
+        ProxyLog.info("Attempting to connect to PE server at " + peServerAddress);
         try {
-            Bootstrap b = new Bootstrap();
-            b.group(group)
-                    .channel(NioDatagramChannel.class)
-                    .handler(new PeConnectionHandler(this.javaClientChannel, this));
-            ChannelFuture f = b.bind(0).sync();
-            peChannel = f.channel();
-            System.out.println("PE Client bound to local address: " + peChannel.localAddress());
-            sendInitialPePacket();
-            peState = PeConnectionState.CONNECTING_1_SENT;
+            sessionKey = PeSessionDemultiplexer.sessionKey(peServerAddress);
+            chunkCache = ChunkCache.forBackend(sessionKey);
+            peSocket = demultiplexer.register(this, eventLoop);
         } catch (Exception e) {
-            System.err.println("Error connecting to PE server: " + e.getMessage());
-            e.printStackTrace();
-            if (javaClientChannel.isActive()) {
-                ByteBuf disconnectPacket = javaClientChannel.alloc().buffer();
-                ProtocolUtils.writeVarInt(0x00, disconnectPacket);
-                ProtocolUtils.writeString("{\"text\":\"Failed to connect to target PE server.\"}", disconnectPacket);
-                javaClientChannel.writeAndFlush(disconnectPacket);
-                javaClientChannel.eventLoop().schedule(() -> {
-                    javaClientChannel.close();
-                }, 50, TimeUnit.MILLISECONDS);
+            handleConnectFailure(e);
+            return;
+        }
+        peChannel = peSocket.channel();
+        peSocket.bindFuture().addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                handleConnectFailure(future.cause());
+                return;
+            }
+            if (peSocket == null || (javaClientChannel != null && !javaClientChannel.isActive())) {
+                shutdown();
+                return;
             }
-            shutdown();
+            ProxyLog.info("PE Client using shared local address: " + peSocket.localAddress());
+            sendInitialPePacket();
+        });
+    }
+    private void handleConnectFailure(Throwable cause) {
+        ProxyLog.error("Error connecting to PE server: " + cause.getMessage(), cause);
+        disconnectJavaClient("Failed to connect to target PE server.");
+        shutdown();
+    }
+    void disconnectJavaClient(String reason) {
+        if (javaClientChannel != null && javaClientChannel.isActive()) {
+            ByteBuf disconnectPacket = JavaPacketEncoder.newPacket(javaClientChannel.alloc());
+            ProtocolUtils.writeVarInt(0x00, disconnectPacket);
+            ProtocolUtils.writeString("{\"text\":\"" + reason + "\"}", disconnectPacket);
+            javaClientChannel.writeAndFlush(disconnectPacket);
+            javaClientChannel.eventLoop().schedule(() -> {
+                javaClientChannel.close();
+            }, 50, TimeUnit.MILLISECONDS);
         }
     }
     private void sendInitialPePacket() {
-        ByteBuf packetBuf = peChannel.alloc().buffer();
-        packetBuf.writeByte(0x05);
-        packetBuf.writeBytes(RAKNET_MAGIC);
-        packetBuf.writeByte(RAKNET_PROTOCOL_VERSION);
-        ProtocolUtils.writeLongLE(clientGuid, packetBuf);
-        ProtocolUtils.writeShortLE(RAKNET_MTU, packetBuf);
-        System.out.println("Sending PE packet Open Connection Request #1 (0x05) to " + peServerAddress + " with readable bytes: " + packetBuf.readableBytes());
+        short cachedMtu = PeMtuCache.get(sessionKey);
+        mtuCandidateIndex = 0;
+        while (cachedMtu > 0 && mtuCandidateIndex < MTU_CANDIDATES.length - 1 && MTU_CANDIDATES[mtuCandidateIndex] > cachedMtu) {
+            mtuCandidateIndex++;
+        }
+        handshakeAttempt = 0;
+        sendOpenConnectionRequest1();
+    }
+    private void sendOpenConnectionRequest1() {
+        short probeMtu = MTU_CANDIDATES[mtuCandidateIndex];
+        ByteBuf packetBuf = peChannel.alloc().ioBuffer(probeMtu - RakNetSession.UDP_IP_OVERHEAD);
+        RakNetHandshakes.writeOpenConnectionRequest1(packetBuf, probeMtu);
+        ProxyLog.debug("Sending PE packet Open Connection Request #1 (0x05) to " + peServerAddress + " probing MTU " + probeMtu + " (attempt " + (handshakeAttempt + 1) + ")");
         peChannel.writeAndFlush(new DatagramPacket(packetBuf, peServerAddress));
-        peState = PeConnectionState.CONNECTING_1_SENT;
+        setPeState(PeConnectionState.CONNECTING_1_SENT);
+        scheduleHandshakeTimeout();
     }
     public void sendOpenConnectionRequest2() {
-        ByteBuf packetBuf = peChannel.alloc().buffer();
-        packetBuf.writeByte(0x07);
-        packetBuf.writeBytes(RAKNET_MAGIC);
-        ProtocolUtils.writeLongLE(this.serverGuid, packetBuf);
-        InetSocketAddress localAddress = (InetSocketAddress) peChannel.localAddress();
-        ProtocolUtils.writePEAddress(localAddress, packetBuf);
-        ProtocolUtils.writeShortLE(this.agreedMtu, packetBuf);
-        ProtocolUtils.writeLongLE(this.clientGuid, packetBuf);
-        System.out.println("Sending PE packet Open Connection Request #2 (0x07) to " + peServerAddress + " with readable bytes: " + packetBuf.readableBytes());
+        ByteBuf packetBuf = peChannel.alloc().ioBuffer(RakNetHandshakes.OPEN_CONNECTION_REQUEST_2_SIZE);
+        RakNetHandshakes.writeOpenConnectionRequest2(packetBuf, sessionKey, agreedMtu, clientGuid);
+        ProxyLog.debug("Sending PE packet Open Connection Request #2 (0x07) to " + peServerAddress + " with MTU " + agreedMtu);
         peChannel.writeAndFlush(new DatagramPacket(packetBuf, peServerAddress));
-        peState = PeConnectionState.CONNECTING_2_SENT;
+        setPeState(PeConnectionState.CONNECTING_2_SENT);
+        scheduleHandshakeTimeout();
+    }
+    private void scheduleHandshakeTimeout() {
+        cancelHandshakeTimeout();
+        handshakeTimeout = peChannel.eventLoop().schedule(this::onHandshakeTimeout, ProxyConfig.MTU_PROBE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    private void cancelHandshakeTimeout() {
+        if (handshakeTimeout != null) {
+            handshakeTimeout.cancel(false);
+            handshakeTimeout = null;
+        }
+    }
+    private void onHandshakeTimeout() {
+        handshakeTimeout = null;
+        handshakeAttempt++;
+        if (peState == PeConnectionState.CONNECTING_1_SENT) {
+            if (handshakeAttempt >= ProxyConfig.MTU_PROBE_ATTEMPTS) {
+                handshakeAttempt = 0;
+                mtuCandidateIndex++;
+                if (mtuCandidateIndex >= MTU_CANDIDATES.length) {
+                    ProxyLog.warn("PE server " + peServerAddress + " did not answer Open Connection Request #1 at any MTU.");
+                    PeMtuCache.forget(sessionKey);
+                    disconnectJavaClient("Target PE server did not respond.");
+                    shutdown();
+                    return;
+                }
+            }
+            sendOpenConnectionRequest1();
+        } else if (peState == PeConnectionState.CONNECTING_2_SENT) {
+            if (handshakeAttempt >= ProxyConfig.MTU_PROBE_ATTEMPTS) {
+                ProxyLog.warn("PE server " + peServerAddress + " did not answer Open Connection Request #2.");
+                disconnectJavaClient("Target PE server did not respond.");
+                shutdown();
+                return;
+            }
+            sendOpenConnectionRequest2();
+        }
+    }
+    void onOpenConnectionReply1(long serverGuid, int serverMtu) {
+        cancelHandshakeTimeout();
+        int probedMtu = MTU_CANDIDATES[mtuCandidateIndex];
+        int mtu = serverMtu >= MIN_MTU ? Math.min(probedMtu, serverMtu) : probedMtu;
+        setServerGuid(serverGuid);
+        setAgreedMtu((short) mtu);
+        PeMtuCache.record(sessionKey, (short) mtu);
+        handshakeAttempt = 0;
+        sendOpenConnectionRequest2();
+    }
+    void onOpenConnectionReply2(int serverMtu) {
+        cancelHandshakeTimeout();
+        if (serverMtu >= MIN_MTU && serverMtu < agreedMtu) {
+            setAgreedMtu((short) serverMtu);
+        }
+        setPeState(PeConnectionState.RAKNET_CONNECTED);
+        ProxyLog.info("RakNet connection established successfully!");
+        onRakNetConnected();
     }
     public void setServerGuid(long serverGuid) {
         this.serverGuid = serverGuid;
     }
     public void setAgreedMtu(short agreedMtu) {
         this.agreedMtu = agreedMtu;
-        System.out.println("PE Client MTU set to: " + agreedMtu);
+        ProxyLog.debug("PE Client MTU set to: " + agreedMtu);
     }
     public void setPeState(PeConnectionState newState) {
+        ProxyMetrics.sessionStateChanged(peState, newState);
         this.peState = newState;
-        System.out.println("PE Client state changed to: " + newState);
+        if (newState == PeConnectionState.CONNECTED) {
+            releaseAdmission();
+        }
+        ProxyLog.debug("PE Client state changed to: " + newState);
     }
     public PeConnectionState getPeState() {
         return peState;
     }
-    public void sendOpenConnectionRequest2(short serverMtu) {
-        System.out.println("Sending PE packet Open Connection Request #2 (0x07) to " + peServerAddress);
+    void onRakNetConnected() {
+        rakNetSession = new RakNetSession(this, peChannel, peServerAddress, agreedMtu);
+        rakNetSession.start();
+        ByteBuf request = peChannel.alloc().ioBuffer(RakNetHandshakes.CONNECTION_REQUEST_SIZE);
+        RakNetHandshakes.writeConnectionRequest(request, clientGuid, System.currentTimeMillis());
+        rakNetSession.send(request, RakNetSession.RELIABLE);
+        rakNetSession.flush();
+        ProxyLog.debug("Sent RakNet Connection Request (0x09) to " + peServerAddress);
+    }
+    void handleEncapsulated(ByteBuf payload) {
+        if (!payload.isReadable()) {
+            return;
+        }
+        int packetId = payload.getUnsignedByte(payload.readerIndex());
+        switch (packetId) {
+            case 0x00:
+                if (payload.readableBytes() >= 9) {
+                    long pingTime = payload.getLong(payload.readerIndex() + 1);
+                    ByteBuf pong = peChannel.alloc().ioBuffer(17);
+                    pong.writeByte(0x03);
+                    pong.writeLong(pingTime);
+                    pong.writeLong(System.currentTimeMillis());
+                    rakNetSession.send(pong, RakNetSession.UNRELIABLE);
+                }
+                break;
+            case 0x03:
+                break;
+            case 0x10:
+                if (peState == PeConnectionState.RAKNET_CONNECTED && !handshakeComplete && payload.readableBytes() >= 17) {
+                    long serverTime = payload.getLong(payload.writerIndex() - 8);
+                    sendClientHandshake(serverTime);
+                    handshakeComplete = true;
+                    handshakeCompletedNanos = System.nanoTime();
+                    if (javaClientChannel == null) {
+                        rakNetSession.flush();
+                        pool.onWarmed(this);
+                        return;
+                    }
+                    startPeLogin();
+                }
+                break;
+            case 0x15:
+                ProxyLog.info("PE server closed the RakNet session.");
+                disconnectJavaClient("Disconnected by the PE server.");
+                shutdown();
+                break;
+            default:
+                handleGamePacket(payload);
+                break;
+        }
+    }
+    private void handleGamePacket(ByteBuf payload) {
+        int packetId = payload.readUnsignedByte();
+        if (isTraced()) {
+            tracePacket(false, packetId, payload.readableBytes());
+        }
+        try {
+            TranslatorRegistry.DEFAULT.translatePeToJava(peState, packetId, this, payload);
+        } catch (RuntimeException e) {
+            // A malformed packet costs only itself: letting it unwind into RakNetSession would drop the rest of an
+            // already-ACKed datagram and leave its ordered channel stuck.
+            ProxyMetrics.recordPeTranslationFailure();
+            ProxyLog.warn("Dropped PE packet 0x" + Integer.toHexString(packetId) + " for " + playerName + ": " + e);
+        }
+    }
+    public void translateJavaPacket(JavaConnectionHandler.ConnectionState state, int packetId, ByteBuf packetBuf) {
+        if (rakNetSession == null) {
+            return;
+        }
+        if (isTraced()) {
+            tracePacket(true, packetId, packetBuf.readableBytes());
+        }
+        TranslatorRegistry.DEFAULT.translateJavaToPe(state, packetId, this, packetBuf);
+        pauseJavaReadsIfBackendFull();
+    }
+    boolean isTraced() {
+        int generation = ProxyLog.traceGeneration();
+        if (generation != traceGeneration) {
+            traceGeneration = generation;
+            traced = ProxyLog.isPlayerTraced(playerName);
+        }
+        return traced;
+    }
+    private void tracePacket(boolean fromJava, int packetId, int length) {
+        if (ProxyLog.isHighVolume(fromJava, packetId)) {
+            if (traceSamples == null) {
+                traceSamples = new int[512];
+            }
+            int counter = (fromJava ? 256 : 0) + packetId;
+            if (traceSamples[counter]++ % ProxyConfig.LOG_TRACE_SAMPLE_EVERY != 0) {
+                return;
+            }
+        }
+        ProxyLog.tracePacket(playerName + (fromJava ? " Java->PE 0x" : " PE->Java 0x") + Integer.toHexString(packetId) + " (" + length + " bytes, state " + peState + ")");
+    }
+    public ByteBuf newPePacket(int packetId, int bodyCapacity) {
+        ByteBuf buf = peChannel.alloc().ioBuffer(1 + bodyCapacity);
+        buf.writeByte(packetId);
+        return buf;
+    }
+    public void sendToPe(ByteBuf packet) {
+        sendToPe(packet, RakNetSession.RELIABLE);
+    }
+    public void sendToPe(ByteBuf packet, int reliability) {
+        if (rakNetSession == null) {
+            packet.release();
+            return;
+        }
+        rakNetSession.send(packet, reliability);
+    }
+    public ByteBuf newJavaPacket(int packetId, int bodyCapacity) {
+        ByteBuf buf = JavaPacketEncoder.newPacket(javaClientChannel.alloc(), 1 + bodyCapacity);
+        ProtocolUtils.writeVarInt(packetId, buf);
+        return buf;
+    }
+    public void sendToJava(ByteBuf packet) {
+        sendToJava(packet, false);
+    }
+    // World data (chunks and block changes) is the bulk of PE->Java traffic and can be re-requested, so it is
+    // queued behind everything else and is the first thing dropped when a slow client hits its deferral budget.
+    public void sendWorldDataToJava(ByteBuf packet) {
+        sendToJava(packet, true);
+    }
+    private void sendToJava(ByteBuf packet, boolean worldData) {
+        if (deferredBytes == 0 && javaClientChannel.isWritable()) {
+            javaClientChannel.writeAndFlush(packet, javaClientChannel.voidPromise());
+            return;
+        }
+        (worldData ? deferredWorldData : deferredPackets).addLast(packet);
+        deferredBytes += packet.readableBytes();
+        while (deferredBytes > ProxyConfig.JAVA_DEFERRED_MAX_BYTES && !deferredWorldData.isEmpty()) {
+            shedWorldData(deferredWorldData.pollFirst());
+        }
+        if (deferredBytes > ProxyConfig.JAVA_DEFERRED_MAX_BYTES) {
+            ProxyLog.warn("Java client " + playerName + " is not keeping up (" + deferredBytes + " bytes deferred), disconnecting.");
+            releaseDeferred();
+            javaClientChannel.close();
+        }
+    }
+    private void shedWorldData(ByteBuf packet) {
+        deferredBytes -= packet.readableBytes();
+        int index = packet.readerIndex();
+        int packetId = packet.getUnsignedByte(index);
+        if (packetId == 0x21) {
+            forgetChunkRequest(packet.getInt(index + 1), packet.getInt(index + 5));
+        } else if (packetId == 0x26) {
+            // Map Chunk Bulk: ID, sky light flag, VarInt column count (capped at 127 by ChunkStreamer, so one byte), then X/Z/mask per column.
+            int count = packet.getUnsignedByte(index + 2);
+            for (int i = 0; i < count; i++) {
+                int meta = index + 3 + i * 10;
+                forgetChunkRequest(packet.getInt(meta), packet.getInt(meta + 4));
+            }
+        } else {
+            long position = packet.getLong(index + 1);
+            int chunkX = (int) (position >> 38) >> 4;
+            int chunkZ = (int) (position << 38 >> 38) >> 4;
+            chunkCache.invalidate(chunkX, chunkZ);
+            forgetChunkRequest(chunkX, chunkZ);
+        }
+        packet.release();
+        worldDataShed = true;
+        ProxyMetrics.recordJavaShed();
+    }
+    // Forgets the request so the chunk is fetched again from the PE server the next time it is in view.
+    void forgetChunkRequest(int chunkX, int chunkZ) {
+        if (chunkX >= 0 && chunkX < PeProtocol.WORLD_CHUNKS && chunkZ >= 0 && chunkZ < PeProtocol.WORLD_CHUNKS) {
+            int bit = chunkX * PeProtocol.WORLD_CHUNKS + chunkZ;
+            requestedChunks[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+    void onJavaWritabilityChanged() {
+        if (deferredBytes == 0) {
+            return;
+        }
+        boolean wrote = false;
+        while (javaClientChannel.isWritable()) {
+            ByteBuf packet = deferredPackets.pollFirst();
+            if (packet == null) {
+                packet = deferredWorldData.pollFirst();
+                if (packet == null) {
+                    break;
+                }
+            }
+            deferredBytes -= packet.readableBytes();
+            javaClientChannel.write(packet, javaClientChannel.voidPromise());
+            wrote = true;
+        }
+        if (wrote) {
+            javaClientChannel.flush();
+        }
+        if (deferredBytes == 0 && worldDataShed && peState == PeConnectionState.CONNECTED) {
+            worldDataShed = false;
+            requestChunksAround(centerChunkX, centerChunkZ);
+        }
+    }
+    private void releaseDeferred() {
+        ByteBuf packet;
+        while ((packet = deferredPackets.pollFirst()) != null) {
+            packet.release();
+        }
+        while ((packet = deferredWorldData.pollFirst()) != null) {
+            packet.release();
+        }
+        deferredBytes = 0;
+    }
+    // Stops reading from the Java client while the RakNet send window is full, so the backlog stays in the kernel.
+    private void pauseJavaReadsIfBackendFull() {
+        if (!javaReadPaused && rakNetSession.isSendWindowFull()) {
+            javaReadPaused = true;
+            javaClientChannel.config().setAutoRead(false);
+        }
+    }
+    void onSendWindowAvailable() {
+        if (javaReadPaused && javaClientChannel != null) {
+            javaReadPaused = false;
+            javaClientChannel.config().setAutoRead(true);
+        }
+    }
+    void onStartGame(int entityId, double x, double y, double z) {
+        this.peEntityId = entityId;
+        // A fresh Start Game means a new world, so every previously spawned entity is gone.
+        entityIds.clear();
+        movement.clearEntities();
+        this.javaEntityId = entityIds.map(entityId);
+        setPeState(PeConnectionState.CONNECTED);
+        updatePosition(x, y, z);
+        movement.start(eventLoop);
+        chunkStreamer.start(eventLoop);
+    }
+    public void updatePosition(double x, double y, double z) {
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        int chunkX = (int) Math.floor(x) >> 4;
+        int chunkZ = (int) Math.floor(z) >> 4;
+        if (peState == PeConnectionState.CONNECTED && (chunkX != centerChunkX || chunkZ != centerChunkZ)) {
+            centerChunkX = chunkX;
+            centerChunkZ = chunkZ;
+            chunkStreamer.onCenterChanged(chunkX, chunkZ);
+            requestChunksAround(chunkX, chunkZ);
+        }
+    }
+    private void requestChunksAround(int centerX, int centerZ) {
+        int radius = ProxyConfig.CHUNK_REQUEST_RADIUS;
+        int minX = Math.max(0, centerX - radius);
+        int maxX = Math.min(PeProtocol.WORLD_CHUNKS - 1, centerX + radius);
+        int minZ = Math.max(0, centerZ - radius);
+        int maxZ = Math.min(PeProtocol.WORLD_CHUNKS - 1, centerZ + radius);
+        for (int chunkX = minX; chunkX <= maxX; chunkX++) {
+            for (int chunkZ = minZ; chunkZ <= maxZ; chunkZ++) {
+                int bit = chunkX * PeProtocol.WORLD_CHUNKS + chunkZ;
+                if ((requestedChunks[bit >>> 6] & (1L << bit)) != 0) {
+                    continue;
+                }
+                requestedChunks[bit >>> 6] |= 1L << bit;
+                ByteBuf request = newPePacket(PeProtocol.REQUEST_CHUNK, 8);
+                request.writeInt(chunkX);
+                request.writeInt(chunkZ);
+                sendToPe(request);
+            }
+        }
+    }
+    public void updateRotation(float yaw, float pitch) {
+        this.yaw = yaw;
+        this.pitch = pitch;
+    }
+    public int getPeEntityId() {
+        return peEntityId;
+    }
+    public int getJavaEntityId() {
+        return javaEntityId;
+    }
+    ChunkStreamer getChunkStreamer() {
+        return chunkStreamer;
+    }
+    int getCenterChunkX() {
+        return centerChunkX;
+    }
+    int getCenterChunkZ() {
+        return centerChunkZ;
+    }
+    MovementCoalescer getMovement() {
+        return movement;
+    }
+    EntityIdMap getEntityIds() {
+        return entityIds;
+    }
+    public double getX() {
+        return x;
+    }
+    public double getY() {
+        return y;
+    }
+    public double getZ() {
+        return z;
+    }
+    public float getYaw() {
+        return yaw;
+    }
+    public float getPitch() {
+        return pitch;
+    }
+    private void sendClientHandshake(long serverTime) {
+        ByteBuf handshake = peChannel.alloc().ioBuffer(RakNetHandshakes.NEW_INCOMING_CONNECTION_SIZE);
+        RakNetHandshakes.writeNewIncomingConnection(handshake, sessionKey, serverTime, System.currentTimeMillis());
+        rakNetSession.send(handshake, RakNetSession.RELIABLE);
+    }
+    private void startPeLogin() {
+        sendPeLoginPacket();
+        rakNetSession.flush();
+        setPeState(PeConnectionState.LOGGING_IN);
+    }
+    // Hands a warmed pooled session to a Java client; the PE Login goes out immediately since RakNet is already up.
+    void adopt(Channel javaClientChannel, String playerName, UUID playerId) {
+        this.javaClientChannel = javaClientChannel;
+        this.playerName = playerName;
+        this.playerId = playerId;
+        this.traceGeneration = -1;
+        countOnBackend();
+        startPeLogin();
+    }
+    private void countOnBackend() {
+        countedOnBackend = true;
+        backend.sessionOpened();
+    }
+    boolean isReadyForAdoption() {
+        return javaClientChannel == null && handshakeComplete && peState == PeConnectionState.RAKNET_CONNECTED && rakNetSession != null;
+    }
+    long getHandshakeCompletedNanos() {
+        return handshakeCompletedNanos;
+    }
+    void sendKeepAlivePing() {
+        ByteBuf ping = peChannel.alloc().ioBuffer(9);
+        ping.writeByte(0x00);
+        ping.writeLong(System.currentTimeMillis());
+        rakNetSession.send(ping, RakNetSession.UNRELIABLE);
+    }
+    void closeGracefully() {
+        if (rakNetSession != null && peState != PeConnectionState.DISCONNECTED) {
+            ByteBuf disconnect = peChannel.alloc().ioBuffer(1);
+            disconnect.writeByte(0x15);
+            rakNetSession.send(disconnect, RakNetSession.RELIABLE);
+            rakNetSession.flush();
+        }
+        shutdown();
     }
     public void sendPeLoginPacket() {
-        System.out.println("Sending PE Minecraft Login packet to " + peServerAddress);
+        ProxyLog.debug("Sending PE Minecraft Login packet to " + peServerAddress);
+        ByteBuf login = peChannel.alloc().ioBuffer(64);
+        login.writeByte(0x82);
+        ProtocolUtils.writePEString(playerName, login);
+        login.writeInt(PeProtocol.PROTOCOL_VERSION);
+        login.writeInt(PeProtocol.PROTOCOL_VERSION);
+        login.writeInt((int) clientGuid);
+        ProtocolUtils.writePEString("", login);
+        rakNetSession.send(login, RakNetSession.RELIABLE);
+    }
+    void handleRakNetTimeout() {
+        disconnectJavaClient("Timed out while talking to the PE server.");
+        shutdown();
+    }
+    // For RakNet state that cannot be recovered, such as a frame that was ACKed but could not be kept.
+    void handleRakNetFailure(String reason) {
+        ProxyLog.warn("RakNet session to " + peServerAddress + " failed: " + reason);
+        disconnectJavaClient("Lost the connection to the PE server.");
+        shutdown();
     }
     public void shutdown() {
-        if (group != null) {
-            if (peChannel != null) {
-                peChannel.close();
+        if (pool != null && javaClientChannel == null) {
+            pool.discard(this);
+        }
+        ProxyMetrics.sessionStateChanged(peState, PeConnectionState.DISCONNECTED);
+        peState = PeConnectionState.DISCONNECTED;
+        releaseAdmission();
+        releaseDeferred();
+        movement.stop();
+        chunkStreamer.stop();
+        if (countedOnBackend) {
+            countedOnBackend = false;
+            backend.sessionClosed();
+        }
+        cancelHandshakeTimeout();
+        if (rakNetSession != null) {
+            rakNetSession.close();
+        }
+        if (peSocket != null) {
+            PeSocket socket = peSocket;
+            peSocket = null;
+            if (socket.eventLoop().inEventLoop()) {
+                demultiplexer.unregister(this, socket);
+            } else {
+                socket.eventLoop().execute(() -> demultiplexer.unregister(this, socket));
             }
-            group.shutdownGracefully();
-            System.out.println("PE Client EventLoopGroup shut down.");
+            ProxyLog.info("PE Client session released from " + socket.localAddress());
+        }
+    }
+    // The admission slot is held from session setup until Start Game arrives, or until the session dies first.
+    void holdAdmission(AdmissionController admission) {
+        this.admission = admission;
+    }
+    private void releaseAdmission() {
+        AdmissionController held = admission;
+        if (held != null) {
+            admission = null;
+            held.release();
         }
     }
+    public RakNetSession getRakNetSession() {
+        return rakNetSession;
+    }
     public Channel getPeChannel() {
         return peChannel;
     }
+    EventLoop getEventLoop() {
+        return eventLoop;
+    }
+    public Channel getJavaClientChannel() {
+        return javaClientChannel;
+    }
+    public long getSessionKey() {
+        return sessionKey;
+    }
+    public ChunkCache getChunkCache() {
+        return chunkCache;
+    }
+    public PeBackend getBackend() {
+        return backend;
+    }
     public InetSocketAddress getPeServerAddress() {
         return peServerAddress;
     }
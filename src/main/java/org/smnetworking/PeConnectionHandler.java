@@ -1,144 +1,135 @@
 package org.smnetworking;
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.Channel;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.socket.DatagramPacket;
 
 import java.net.InetSocketAddress;
-import java.util.concurrent.TimeUnit;
 import java.util.Arrays;
 public class PeConnectionHandler extends SimpleChannelInboundHandler<DatagramPacket> {
-    private final Channel javaClientChannel;
-    private final PeClient peClient;
-    private enum PeConnectionState {
-        DISCONNECTED,
-        CONNECTING_1_SENT,
-        CONNECTING_2_SENT,
-        RAKNET_CONNECTED,
-        LOGGING_IN,
-        CONNECTED
-    }
+    private final PeSocket socket;
+    private long unroutedPackets;
     private static final byte[] RAKNET_MAGIC = {(byte) 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0x00, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0x12, (byte) 0x34, (byte) 0x56, (byte) 0x78};
-    public PeConnectionHandler(Channel javaClientChannel, PeClient peClient) {
-        this.javaClientChannel = javaClientChannel;
-        this.peClient = peClient;
+    public PeConnectionHandler(PeSocket socket) {
+        this.socket = socket;
     }
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, DatagramPacket msg) throws Exception {
-        PeClient.PeConnectionState currentPeState = peClient.getPeState();
         ByteBuf pePacketData = msg.content();
         InetSocketAddress sender = msg.sender();
+        BackendRegistry backends = socket.demultiplexer().backends();
+        if (backends != null && backends.handlePong(sender, pePacketData)) {
+            return;
+        }
+        PeClient peClient = socket.getSession(sender);
+        if (peClient == null) {
+            unroutedPackets++;
+            return;
+        }
+        PeClient.PeConnectionState currentPeState = peClient.getPeState();
         if (pePacketData.readableBytes() <= 0) {
-            System.out.println("Received empty PE packet.");
+            ProxyLog.debug("Received empty PE packet.");
             return;
         }
         byte packetId = pePacketData.readByte();
-        System.out.println("Received PE Packet ID: 0x" + Integer.toHexString(packetId & 0xFF) + " (State: TODO)");
+        int unsignedId = packetId & 0xFF;
+        RakNetSession rakNetSession = peClient.getRakNetSession();
+        if (rakNetSession != null) {
+            if (unsignedId >= 0x80 && unsignedId <= 0x8F) {
+                rakNetSession.handleDatagram(pePacketData);
+                return;
+            } else if (unsignedId == 0xC0) {
+                rakNetSession.handleAck(pePacketData);
+                return;
+            } else if (unsignedId == 0xA0) {
+                rakNetSession.handleNack(pePacketData);
+                return;
+            }
+        }
+        if (ProxyLog.isDebugEnabled()) {
+            ProxyLog.debug("Received PE Packet ID: 0x" + Integer.toHexString(unsignedId) + " (State: " + currentPeState + ")");
+        }
         switch (packetId) {
             case 0x06:
                 if (currentPeState == PeClient.PeConnectionState.CONNECTING_1_SENT) {
-                    System.out.println("Received PE packet: Open Connection Reply #1 (0x06)");
-                    handleOpenConnectionReply1(ctx, pePacketData);
+                    handleOpenConnectionReply1(peClient, pePacketData);
                 } else {
-                    System.out.println("Received unexpected Open Connection Reply #1 in state: " + currentPeState);
+                    ProxyLog.info("Received unexpected Open Connection Reply #1 in state: " + currentPeState);
                 }
                 break;
             case 0x08:
                 if (currentPeState == PeClient.PeConnectionState.CONNECTING_2_SENT) {
-                    System.out.println("Received PE packet: Open Connection Reply #2 (0x08)");
-                    handleOpenConnectionReply2(ctx, pePacketData);
+                    handleOpenConnectionReply2(peClient, pePacketData);
                 } else {
-                    System.out.println("Received unexpected Open Connection Reply #2 in state: " + currentPeState);
+                    ProxyLog.info("Received unexpected Open Connection Reply #2 in state: " + currentPeState);
                 }
                 break;
             case 0x1a:
-                System.err.println("Received PE packet: Incompatible Protocol Version (0x1a)");
-                if (javaClientChannel.isActive()) {
-                    ByteBuf disconnectPacket = javaClientChannel.alloc().buffer();
-                    ProtocolUtils.writeVarInt(0x00, disconnectPacket);
-                    ProtocolUtils.writeString("{\"text\":\"Target PE server has incompatible RakNet protocol version.\"}", disconnectPacket);
-                    javaClientChannel.writeAndFlush(disconnectPacket);
-                    javaClientChannel.eventLoop().schedule(() -> {
-                        javaClientChannel.close();
-                    }, 50, TimeUnit.MILLISECONDS);
-                }
-                ctx.close();
+                ProxyLog.warn("Received PE packet: Incompatible Protocol Version (0x1a)");
+                peClient.disconnectJavaClient("Target PE server has incompatible RakNet protocol version.");
                 peClient.shutdown();
                 break;
             default:
-                System.out.println("Received unknown PE Packet ID: 0x" + Integer.toHexString(packetId & 0xFF) + " in state: " + currentPeState);
-                int bytesToDump = Math.min(pePacketData.readableBytes(), 32);
-                byte[] dump = new byte[bytesToDump];
-                pePacketData.getBytes(pePacketData.readerIndex(), dump);
-                System.out.print("--- Raw unknown PE bytes (" + bytesToDump + "): ");
-                for (byte b : dump) {
-                    System.out.printf("%02X ", b);
+                if (ProxyLog.isDebugEnabled()) {
+                    int bytesToDump = Math.min(pePacketData.readableBytes(), 32);
+                    ProxyLog.debug("Received unknown PE Packet ID: 0x" + Integer.toHexString(unsignedId) + " in state: " + currentPeState + ", first " + bytesToDump + " bytes: " + ByteBufUtil.hexDump(pePacketData, pePacketData.readerIndex(), bytesToDump));
                 }
-                System.out.println(" ---");
                 break;
         }
     }
-    private void handleOpenConnectionReply1(ChannelHandlerContext ctx, ByteBuf packetData) {
+    private void handleOpenConnectionReply1(PeClient peClient, ByteBuf packetData) {
         try {
             byte[] magic = new byte[16];
             packetData.readBytes(magic);
             if (!Arrays.equals(magic, RAKNET_MAGIC)) {
-                System.err.println("Received Open Connection Reply #1 with invalid magic bytes.");
-                ctx.close();
+                ProxyLog.warn("Received Open Connection Reply #1 with invalid magic bytes.");
+                peClient.shutdown();
                 return;
             }
-            long serverGuid = ProtocolUtils.readLongLE(packetData);
+            long serverGuid = packetData.readLong();
             byte security = packetData.readByte();
-            short clientMtu = ProtocolUtils.readShortLE(packetData);
-            System.out.println("  Server GUID: " + serverGuid);
-            System.out.println("  Server Security: " + security);
-            System.out.println("  Client MTU confirmed by server: " + clientMtu);
+            int serverMtu = packetData.readUnsignedShort();
+            ProxyLog.debug("Open Connection Reply #1: server GUID " + serverGuid + ", security " + security + ", MTU " + serverMtu);
+            peClient.onOpenConnectionReply1(serverGuid, serverMtu);
         } catch (Exception e) {
-            System.err.println("Error parsing Open Connection Reply #1: " + e.getMessage());
-            e.printStackTrace();
-            ctx.close();
+            ProxyLog.error("Error parsing Open Connection Reply #1: " + e.getMessage(), e);
+            peClient.shutdown();
         }
     }
-    private void handleOpenConnectionReply2(ChannelHandlerContext ctx, ByteBuf packetData) {
-        System.out.println("Processing PE packet: Open Connection Reply #2 (0x08)");
+    private void handleOpenConnectionReply2(PeClient peClient, ByteBuf packetData) {
         try {
             byte[] magic = new byte[16];
             packetData.readBytes(magic);
             if (!Arrays.equals(magic, RAKNET_MAGIC)) {
-                System.err.println("Received Open Connection Reply #2 with invalid magic bytes.");
-                ctx.close();
+                ProxyLog.warn("Received Open Connection Reply #2 with invalid magic bytes.");
                 peClient.shutdown();
                 return;
             }
-            long serverGuid = ProtocolUtils.readLongLE(packetData);
-            InetSocketAddress clientAddressOnServer = ProtocolUtils.readPEAddress(packetData);
-            short mtuSize = ProtocolUtils.readShortLE(packetData);
+            long serverGuid = packetData.readLong();
+            long clientAddressOnServer = ProtocolUtils.readPEAddressPacked(packetData);
+            int mtuSize = packetData.readUnsignedShort();
             byte security = packetData.readByte();
-            System.out.println("  Server GUID: " + serverGuid);
-            System.out.println("  Client Address on Server: " + clientAddressOnServer);
-            System.out.println("  MTU confirmed again: " + mtuSize);
-            System.out.println("  Server Security: " + security);
-            peClient.setPeState(PeClient.PeConnectionState.RAKNET_CONNECTED);
-            System.out.println("RakNet connection established successfully!");
-            peClient.sendPeLoginPacket(/* передать нужные данные: ник, UUID Java клиента, etc */);
-            peClient.setPeState(PeClient.PeConnectionState.LOGGING_IN);
+            ProxyLog.debug("Open Connection Reply #2: server GUID " + serverGuid + ", client address " + PeSessionDemultiplexer.describeKey(clientAddressOnServer) + ", MTU " + mtuSize + ", security " + security);
+            peClient.onOpenConnectionReply2(mtuSize);
         } catch (Exception e) {
-            System.err.println("Error parsing Open Connection Reply #2: " + e.getMessage());
-            e.printStackTrace();
-            ctx.close();
+            ProxyLog.error("Error parsing Open Connection Reply #2: " + e.getMessage(), e);
             peClient.shutdown();
         }
     }
     @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        ctx.flush();
+        super.channelReadComplete(ctx);
+    }
+    @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
-        System.err.println("PE Client connection error:");
-        cause.printStackTrace();
-        ctx.close();
+        ProxyLog.error("PE socket " + ctx.channel().localAddress() + " error", cause);
     }
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        System.out.println("PE Client channel inactive.");
+        ProxyLog.info("PE socket " + ctx.channel().localAddress() + " inactive (" + socket.sessionCount() + " sessions, " + unroutedPackets + " unrouted packets).");
+        socket.demultiplexer().socketClosed(socket);
         super.channelInactive(ctx);
     }
 }
\ No newline at end of file
@@ -0,0 +1,134 @@
+package org.smnetworking;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+// Keeps RakNet sessions to the backend that already finished the offline and connected handshakes, one pool per
+// event loop so an adopted session always lives on its Java client's loop. All state is confined to that loop.
+public class PeConnectionPool {
+    private static final long MAX_IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(ProxyConfig.PE_POOL_MAX_IDLE_MILLIS);
+    private final PeBackend backend;
+    private final PeSessionDemultiplexer demultiplexer;
+    private final EventLoopGroup group;
+    private final Map<EventLoop, LoopPool> pools = new IdentityHashMap<>();
+    private final List<ScheduledFuture<?>> maintenanceTasks = new ArrayList<>();
+    private volatile boolean running;
+    public PeConnectionPool(PeBackend backend, PeSessionDemultiplexer demultiplexer, EventLoopGroup group) {
+        this.backend = backend;
+        this.demultiplexer = demultiplexer;
+        this.group = group;
+    }
+    public void start() {
+        List<EventLoop> loops = new ArrayList<>();
+        for (EventExecutor executor : group) {
+            loops.add((EventLoop) executor);
+        }
+        int perLoop = (ProxyConfig.PE_POOL_SIZE + loops.size() - 1) / loops.size();
+        for (EventLoop loop : loops) {
+            pools.put(loop, new LoopPool(perLoop));
+        }
+        running = true;
+        for (EventLoop loop : loops) {
+            maintenanceTasks.add(loop.scheduleAtFixedRate(() -> maintain(loop), 0, ProxyConfig.PE_POOL_MAINTAIN_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        ProxyLog.info("Pre-warming " + perLoop * loops.size() + " PE sessions to " + backend.describe());
+    }
+    public void stop() {
+        running = false;
+        for (ScheduledFuture<?> task : maintenanceTasks) {
+            task.cancel(false);
+        }
+        for (Map.Entry<EventLoop, LoopPool> entry : pools.entrySet()) {
+            LoopPool pool = entry.getValue();
+            entry.getKey().execute(() -> {
+                for (PeClient client : new ArrayList<>(pool.ready)) {
+                    client.closeGracefully();
+                }
+                for (PeClient client : new ArrayList<>(pool.warming)) {
+                    client.shutdown();
+                }
+            });
+        }
+    }
+    // Returns a session whose handshake is complete, or null when the pool for this loop is empty.
+    public PeClient acquire(EventLoop loop) {
+        LoopPool pool = pools.get(loop);
+        if (pool == null) {
+            return null;
+        }
+        PeClient client;
+        while ((client = pool.ready.pollFirst()) != null) {
+            if (client.isReadyForAdoption() && System.nanoTime() - client.getHandshakeCompletedNanos() < MAX_IDLE_NANOS) {
+                loop.execute(() -> maintain(loop));
+                return client;
+            }
+            client.closeGracefully();
+        }
+        loop.execute(() -> maintain(loop));
+        return null;
+    }
+    void onWarmed(PeClient client) {
+        LoopPool pool = pools.get(client.getEventLoop());
+        if (pool == null || !pool.warming.remove(client) || !running) {
+            client.closeGracefully();
+            return;
+        }
+        pool.ready.addLast(client);
+    }
+    void discard(PeClient client) {
+        LoopPool pool = pools.get(client.getEventLoop());
+        if (pool != null) {
+            pool.warming.remove(client);
+            pool.ready.remove(client);
+        }
+    }
+    private void maintain(EventLoop loop) {
+        LoopPool pool = pools.get(loop);
+        if (!running) {
+            return;
+        }
+        long now = System.nanoTime();
+        // A drained backend keeps no warm sessions; they are rebuilt once it accepts sessions again.
+        boolean accepting = backend.isAcceptingSessions();
+        Iterator<PeClient> it = pool.ready.iterator();
+        while (it.hasNext()) {
+            PeClient client = it.next();
+            if (!accepting || !client.isReadyForAdoption() || now - client.getHandshakeCompletedNanos() >= MAX_IDLE_NANOS) {
+                it.remove();
+                client.closeGracefully();
+            } else {
+                client.sendKeepAlivePing();
+            }
+        }
+        while (accepting && pool.ready.size() + pool.warming.size() < pool.target) {
+            PeClient client = new PeClient(backend, loop, demultiplexer, this);
+            pool.warming.add(client);
+            client.connect();
+        }
+    }
+    public int readyCount() {
+        int total = 0;
+        for (LoopPool pool : pools.values()) {
+            total += pool.ready.size();
+        }
+        return total;
+    }
+    private static final class LoopPool {
+        private final int target;
+        private final ArrayDeque<PeClient> ready = new ArrayDeque<>();
+        private final Set<PeClient> warming = Collections.newSetFromMap(new IdentityHashMap<>());
+        private LoopPool(int target) {
+            this.target = target;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.smnetworking;
+import java.util.concurrent.ConcurrentHashMap;
+public final class PeMtuCache {
+    private static final ConcurrentHashMap<Long, Short> discoveredMtu = new ConcurrentHashMap<>();
+    private PeMtuCache() {
+    }
+    public static short get(long backendKey) {
+        Short mtu = discoveredMtu.get(backendKey);
+        return mtu == null ? 0 : mtu;
+    }
+    public static void record(long backendKey, short mtu) {
+        Short previous = discoveredMtu.put(backendKey, mtu);
+        if (previous == null || previous != mtu) {
+            ProxyLog.info("Recorded path MTU " + mtu + " for PE backend " + PeSessionDemultiplexer.describeKey(backendKey));
+        }
+    }
+    public static void forget(long backendKey) {
+        discoveredMtu.remove(backendKey);
+    }
+}
@@ -0,0 +1,35 @@
+package org.smnetworking;
+public final class PeProtocol {
+    public static final int PROTOCOL_VERSION = 14;
+    public static final int LOGIN = 0x82;
+    public static final int LOGIN_STATUS = 0x83;
+    public static final int READY = 0x84;
+    public static final int MESSAGE = 0x85;
+    public static final int SET_TIME = 0x86;
+    public static final int START_GAME = 0x87;
+    public static final int ADD_MOB = 0x88;
+    public static final int ADD_PLAYER = 0x89;
+    public static final int REMOVE_PLAYER = 0x8a;
+    public static final int ADD_ENTITY = 0x8c;
+    public static final int REMOVE_ENTITY = 0x8d;
+    public static final int ADD_ITEM_ENTITY = 0x8e;
+    public static final int TAKE_ITEM_ENTITY = 0x8f;
+    public static final int MOVE_ENTITY = 0x90;
+    public static final int MOVE_ENTITY_POSROT = 0x93;
+    public static final int ROTATE_HEAD = 0x94;
+    public static final int MOVE_PLAYER = 0x95;
+    public static final int PLACE_BLOCK = 0x96;
+    public static final int REMOVE_BLOCK = 0x97;
+    public static final int UPDATE_BLOCK = 0x98;
+    public static final int REQUEST_CHUNK = 0x9e;
+    public static final int CHUNK_DATA = 0x9f;
+    public static final int SET_ENTITY_DATA = 0xa7;
+    public static final int SET_HEALTH = 0xaa;
+    public static final int SET_SPAWN_POSITION = 0xab;
+    public static final int ANIMATE = 0xac;
+    public static final int RESPAWN = 0xad;
+    public static final float PLAYER_EYE_HEIGHT = 1.62f;
+    public static final int WORLD_CHUNKS = 16;
+    private PeProtocol() {
+    }
+}
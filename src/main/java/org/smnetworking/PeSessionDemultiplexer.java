@@ -0,0 +1,112 @@
+package org.smnetworking;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+public class PeSessionDemultiplexer {
+    private final EventLoopGroup group;
+    private final Transport transport;
+    private final Map<EventLoop, List<PeSocket>> socketsByLoop = new IdentityHashMap<>();
+    private volatile BackendRegistry backends;
+    private volatile AdmissionController admission;
+    public PeSessionDemultiplexer(EventLoopGroup group, Transport transport) {
+        this.group = group;
+        this.transport = transport;
+    }
+    public void start() throws InterruptedException {
+        for (EventExecutor executor : group) {
+            EventLoop loop = (EventLoop) executor;
+            PeSocket socket = new PeSocket(this, loop, true);
+            socket.bindFuture().sync();
+            List<PeSocket> sockets = new ArrayList<>();
+            sockets.add(socket);
+            socketsByLoop.put(loop, sockets);
+        }
+        ProxyLog.info("PE session demultiplexer bound " + socketsByLoop.size() + " shared UDP sockets");
+    }
+    public PeSocket register(PeClient client, EventLoop loop) {
+        if (!loop.inEventLoop()) {
+            throw new IllegalStateException("PE sessions must be registered from their own event loop");
+        }
+        List<PeSocket> sockets = socketsByLoop.get(loop);
+        if (sockets == null) {
+            throw new IllegalStateException("Event loop is not part of the proxy worker group");
+        }
+        long key = client.getSessionKey();
+        for (PeSocket socket : sockets) {
+            if (!socket.hasSession(key) && socket.channel().isOpen()) {
+                socket.addSession(key, client);
+                return socket;
+            }
+        }
+        PeSocket socket = new PeSocket(this, loop, false);
+        sockets.add(socket);
+        socket.addSession(key, client);
+        return socket;
+    }
+    public void unregister(PeClient client, PeSocket socket) {
+        if (!socket.removeSession(client.getSessionKey(), client)) {
+            return;
+        }
+        if (!socket.isBase() && socket.sessionCount() == 0) {
+            socketsByLoop.get(socket.eventLoop()).remove(socket);
+            socket.channel().close();
+        }
+    }
+    void socketClosed(PeSocket socket) {
+        List<PeSocket> sockets = socketsByLoop.get(socket.eventLoop());
+        if (sockets != null) {
+            sockets.remove(socket);
+        }
+        for (PeClient client : socket.sessionsSnapshot()) {
+            client.shutdown();
+        }
+    }
+    public void shutdown() {
+        for (List<PeSocket> sockets : socketsByLoop.values()) {
+            for (PeSocket socket : sockets) {
+                socket.channel().close();
+            }
+        }
+    }
+    PeSocket baseSocket(EventLoop loop) {
+        List<PeSocket> sockets = socketsByLoop.get(loop);
+        if (sockets == null || sockets.isEmpty() || !sockets.get(0).isBase()) {
+            return null;
+        }
+        return sockets.get(0);
+    }
+    public void setBackends(BackendRegistry backends) {
+        this.backends = backends;
+    }
+    public BackendRegistry backends() {
+        return backends;
+    }
+    public void setAdmission(AdmissionController admission) {
+        this.admission = admission;
+    }
+    public AdmissionController admission() {
+        return admission;
+    }
+    public Transport transport() {
+        return transport;
+    }
+    public static String describeKey(long key) {
+        int ip = (int) (key >>> 16);
+        return ((ip >>> 24) & 0xFF) + "." + ((ip >>> 16) & 0xFF) + "." + ((ip >>> 8) & 0xFF) + "." + (ip & 0xFF) + ":" + (key & 0xFFFF);
+    }
+    public static long sessionKey(InetSocketAddress address) {
+        InetAddress inetAddress = address.getAddress();
+        if (!(inetAddress instanceof Inet4Address)) {
+            throw new IllegalArgumentException("Only IPv4 PE servers are supported: " + address);
+        }
+        return ((ProtocolUtils.packIPv4(inetAddress) & 0xFFFFFFFFL) << 16) | (address.getPort() & 0xFFFF);
+    }
+}
@@ -0,0 +1,97 @@
+package org.smnetworking;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.EventLoop;
+import io.netty.util.collection.LongObjectHashMap;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+public class PeSocket {
+    private final PeSessionDemultiplexer demultiplexer;
+    private final EventLoop eventLoop;
+    private final boolean base;
+    private final ChannelFuture bindFuture;
+    private final Channel channel;
+    private final LongObjectHashMap<PeClient> sessions = new LongObjectHashMap<>();
+    // Backend address and key of every session on this socket. A socket holds at most one session per backend, so
+    // a linear scan matches the sender of each inbound datagram without InetAddress.getAddress() copying its bytes.
+    private InetSocketAddress[] sessionAddresses = new InetSocketAddress[4];
+    private long[] sessionAddressKeys = new long[4];
+    private int sessionAddressCount;
+    PeSocket(PeSessionDemultiplexer demultiplexer, EventLoop eventLoop, boolean base) {
+        this.demultiplexer = demultiplexer;
+        this.eventLoop = eventLoop;
+        this.base = base;
+        Bootstrap b = new Bootstrap();
+        b.group(eventLoop)
+                .channel(demultiplexer.transport().datagramChannelClass())
+                .handler(new PeConnectionHandler(this));
+        demultiplexer.transport().configureDatagram(b);
+        this.bindFuture = b.bind(0);
+        this.channel = bindFuture.channel();
+    }
+    public PeClient getSession(long sessionKey) {
+        return sessions.get(sessionKey);
+    }
+    public PeClient getSession(InetSocketAddress sender) {
+        for (int i = 0; i < sessionAddressCount; i++) {
+            if (sessionAddresses[i].equals(sender)) {
+                return sessions.get(sessionAddressKeys[i]);
+            }
+        }
+        return null;
+    }
+    boolean hasSession(long sessionKey) {
+        return sessions.containsKey(sessionKey);
+    }
+    void addSession(long sessionKey, PeClient client) {
+        sessions.put(sessionKey, client);
+        if (sessionAddressCount == sessionAddresses.length) {
+            sessionAddresses = Arrays.copyOf(sessionAddresses, sessionAddressCount * 2);
+            sessionAddressKeys = Arrays.copyOf(sessionAddressKeys, sessionAddressCount * 2);
+        }
+        sessionAddresses[sessionAddressCount] = client.getPeServerAddress();
+        sessionAddressKeys[sessionAddressCount++] = sessionKey;
+    }
+    boolean removeSession(long sessionKey, PeClient client) {
+        if (sessions.get(sessionKey) != client) {
+            return false;
+        }
+        sessions.remove(sessionKey);
+        for (int i = 0; i < sessionAddressCount; i++) {
+            if (sessionAddressKeys[i] == sessionKey) {
+                int last = --sessionAddressCount;
+                sessionAddresses[i] = sessionAddresses[last];
+                sessionAddressKeys[i] = sessionAddressKeys[last];
+                sessionAddresses[last] = null;
+                break;
+            }
+        }
+        return true;
+    }
+    int sessionCount() {
+        return sessions.size();
+    }
+    PeClient[] sessionsSnapshot() {
+        return sessions.values().toArray(new PeClient[0]);
+    }
+    public ChannelFuture bindFuture() {
+        return bindFuture;
+    }
+    public Channel channel() {
+        return channel;
+    }
+    public EventLoop eventLoop() {
+        return eventLoop;
+    }
+    public PeSessionDemultiplexer demultiplexer() {
+        return demultiplexer;
+    }
+    boolean isBase() {
+        return base;
+    }
+    public InetSocketAddress localAddress() {
+        return (InetSocketAddress) channel.localAddress();
+    }
+}
@@ -0,0 +1,378 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+final class PeToJavaTranslators {
+    private static final PeClient.PeConnectionState LOGGING_IN = PeClient.PeConnectionState.LOGGING_IN;
+    private static final PeClient.PeConnectionState CONNECTED = PeClient.PeConnectionState.CONNECTED;
+    private static final byte[] CHAT_JSON_PREFIX = "{\"text\":\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHAT_JSON_SUFFIX = "\"}".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] JAVA_LEVEL_TYPE = "default".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private PeToJavaTranslators() {
+    }
+    static void register(TranslatorRegistry registry) {
+        registry.registerPeToJava(LOGGING_IN, PeProtocol.LOGIN_STATUS, PeToJavaTranslators::loginStatus);
+        registry.registerPeToJava(LOGGING_IN, PeProtocol.START_GAME, PeToJavaTranslators::startGame);
+        registry.registerPeToJava(LOGGING_IN, PeProtocol.MESSAGE, PeToJavaTranslators::message);
+        registry.registerPeToJava(CONNECTED, PeProtocol.MESSAGE, PeToJavaTranslators::message);
+        registry.registerPeToJava(CONNECTED, PeProtocol.SET_TIME, PeToJavaTranslators::setTime);
+        registry.registerPeToJava(CONNECTED, PeProtocol.MOVE_PLAYER, PeToJavaTranslators::movePlayer);
+        registry.registerPeToJava(CONNECTED, PeProtocol.MOVE_ENTITY_POSROT, PeToJavaTranslators::moveEntity);
+        registry.registerPeToJava(CONNECTED, PeProtocol.SET_HEALTH, PeToJavaTranslators::setHealth);
+        registry.registerPeToJava(CONNECTED, PeProtocol.ADD_PLAYER, PeToJavaTranslators::addPlayer);
+        registry.registerPeToJava(CONNECTED, PeProtocol.ADD_MOB, PeToJavaTranslators::addMob);
+        registry.registerPeToJava(CONNECTED, PeProtocol.SET_ENTITY_DATA, PeToJavaTranslators::setEntityData);
+        registry.registerPeToJava(CONNECTED, PeProtocol.REMOVE_PLAYER, PeToJavaTranslators::removePlayer);
+        registry.registerPeToJava(CONNECTED, PeProtocol.REMOVE_ENTITY, PeToJavaTranslators::removeEntity);
+        registry.registerPeToJava(CONNECTED, PeProtocol.CHUNK_DATA, PeToJavaTranslators::chunkData);
+        registry.registerPeToJava(CONNECTED, PeProtocol.UPDATE_BLOCK, PeToJavaTranslators::updateBlock);
+    }
+    private static void loginStatus(PeClient session, ByteBuf in) {
+        int status = in.readInt();
+        if (status == 0) {
+            return;
+        }
+        String reason = status == 1 ? "Your client is outdated for the target PE server." : status == 2 ? "The target PE server is outdated." : "Login rejected by the PE server (status " + status + ").";
+        session.disconnectJavaClient(reason);
+        session.shutdown();
+    }
+    private static void startGame(PeClient session, ByteBuf in) {
+        in.skipBytes(8);
+        int gamemode = in.readInt();
+        int entityId = in.readInt();
+        float x = in.readFloat();
+        float y = in.readFloat();
+        float z = in.readFloat();
+        session.onStartGame(entityId, x, y - PeProtocol.PLAYER_EYE_HEIGHT, z);
+        ByteBuf joinGame = session.newJavaPacket(0x01, 24);
+        joinGame.writeInt(session.getJavaEntityId());
+        joinGame.writeByte(gamemode & 0x01);
+        joinGame.writeByte(0);
+        joinGame.writeByte(1);
+        joinGame.writeByte(20);
+        ProtocolUtils.writeVarInt(7, joinGame);
+        joinGame.writeBytes(JAVA_LEVEL_TYPE);
+        joinGame.writeBoolean(false);
+        session.sendToJava(joinGame);
+        writePositionAndLook(session, session.getX(), session.getY(), session.getZ(), 0f, 0f);
+        ByteBuf ready = session.newPePacket(PeProtocol.READY, 1);
+        ready.writeByte(1);
+        session.sendToPe(ready);
+    }
+    private static void message(PeClient session, ByteBuf in) {
+        int sourceLength = in.readUnsignedShort();
+        int sourceStart = in.readerIndex();
+        in.skipBytes(sourceLength);
+        int messageLength = in.readUnsignedShort();
+        int messageStart = in.readerIndex();
+        in.skipBytes(messageLength);
+        ByteBuf chat = session.newJavaPacket(0x02, sourceLength + messageLength + 16);
+        int textLength = escapedLength(in, messageStart, messageLength);
+        if (sourceLength > 0) {
+            textLength += 3 + escapedLength(in, sourceStart, sourceLength);
+        }
+        ProtocolUtils.writeVarInt(CHAT_JSON_PREFIX.length + textLength + CHAT_JSON_SUFFIX.length, chat);
+        chat.writeBytes(CHAT_JSON_PREFIX);
+        if (sourceLength > 0) {
+            chat.writeByte('<');
+            writeEscaped(chat, in, sourceStart, sourceLength);
+            chat.writeByte('>');
+            chat.writeByte(' ');
+        }
+        writeEscaped(chat, in, messageStart, messageLength);
+        chat.writeBytes(CHAT_JSON_SUFFIX);
+        chat.writeByte(0);
+        session.sendToJava(chat);
+    }
+    private static int escapedLength(ByteBuf in, int start, int length) {
+        int escapedLength = length;
+        for (int i = start, end = start + length; i < end; i++) {
+            byte b = in.getByte(i);
+            if (b == '"' || b == '\\') {
+                escapedLength += 1;
+            } else if (b >= 0 && b < 0x20) {
+                escapedLength += 5;
+            }
+        }
+        return escapedLength;
+    }
+    private static void writeEscaped(ByteBuf out, ByteBuf in, int start, int length) {
+        for (int i = start, end = start + length; i < end; i++) {
+            byte b = in.getByte(i);
+            if (b == '"' || b == '\\') {
+                out.writeByte('\\');
+                out.writeByte(b);
+            } else if (b >= 0 && b < 0x20) {
+                out.writeByte('\\');
+                out.writeByte('u');
+                out.writeByte('0');
+                out.writeByte('0');
+                out.writeByte(HEX_DIGITS[b >>> 4]);
+                out.writeByte(HEX_DIGITS[b & 0x0F]);
+            } else {
+                out.writeByte(b);
+            }
+        }
+    }
+    private static void setTime(PeClient session, ByteBuf in) {
+        int time = in.readInt();
+        boolean started = in.isReadable() && in.readBoolean();
+        ByteBuf timeUpdate = session.newJavaPacket(0x03, 16);
+        timeUpdate.writeLong(time);
+        timeUpdate.writeLong(started ? time : -Math.max(1, time));
+        session.sendToJava(timeUpdate);
+    }
+    private static void movePlayer(PeClient session, ByteBuf in) {
+        int entityId = in.readInt();
+        float x = in.readFloat();
+        float y = in.readFloat() - PeProtocol.PLAYER_EYE_HEIGHT;
+        float z = in.readFloat();
+        float yaw = in.readFloat();
+        float pitch = in.readFloat();
+        if (entityId != session.getPeEntityId()) {
+            int javaId = session.getEntityIds().toJava(entityId);
+            if (javaId != EntityIdMap.NO_ENTITY) {
+                session.getMovement().entityMoved(javaId, x, y, z, yaw, pitch);
+            }
+            return;
+        }
+        session.updatePosition(x, y, z);
+        session.updateRotation(yaw, pitch);
+        writePositionAndLook(session, x, y, z, yaw, pitch);
+    }
+    private static void writePositionAndLook(PeClient session, double x, double y, double z, float yaw, float pitch) {
+        ByteBuf positionAndLook = session.newJavaPacket(0x08, 33);
+        positionAndLook.writeDouble(x);
+        positionAndLook.writeDouble(y);
+        positionAndLook.writeDouble(z);
+        positionAndLook.writeFloat(yaw);
+        positionAndLook.writeFloat(pitch);
+        positionAndLook.writeByte(0);
+        session.sendToJava(positionAndLook);
+    }
+    private static void setHealth(PeClient session, ByteBuf in) {
+        int health = in.readUnsignedByte();
+        ByteBuf updateHealth = session.newJavaPacket(0x06, 10);
+        updateHealth.writeFloat(health);
+        ProtocolUtils.writeVarInt(20, updateHealth);
+        updateHealth.writeFloat(5f);
+        session.sendToJava(updateHealth);
+    }
+    private static void moveEntity(PeClient session, ByteBuf in) {
+        int javaId = session.getEntityIds().toJava(in.readInt());
+        if (javaId == EntityIdMap.NO_ENTITY || javaId == session.getJavaEntityId()) {
+            return;
+        }
+        session.getMovement().entityMoved(javaId, in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+    }
+    private static void addPlayer(PeClient session, ByteBuf in) {
+        long clientId = in.readLong();
+        String username = ProtocolUtils.readPEString(in, StringInternCache.SHARED);
+        int peId = in.readInt();
+        float x = in.readFloat();
+        float y = in.readFloat();
+        float z = in.readFloat();
+        byte yaw = in.readByte();
+        byte pitch = in.readByte();
+        in.skipBytes(4);
+        byte flags = readPeEntityFlags(in);
+        int javaId = session.getEntityIds().map(peId);
+        UUID playerId = remotePlayerId(clientId);
+        // 1.8 clients build the other player from its tab list entry, so it has to be listed before it is spawned.
+        ByteBuf listItem = session.newJavaPacket(0x38, 32 + username.length());
+        ProtocolUtils.writeVarInt(0, listItem);
+        ProtocolUtils.writeVarInt(1, listItem);
+        listItem.writeLong(playerId.getMostSignificantBits());
+        listItem.writeLong(playerId.getLeastSignificantBits());
+        ProtocolUtils.writeString(username, listItem);
+        ProtocolUtils.writeVarInt(0, listItem);
+        ProtocolUtils.writeVarInt(0, listItem);
+        ProtocolUtils.writeVarInt(0, listItem);
+        listItem.writeBoolean(false);
+        session.sendToJava(listItem);
+        ByteBuf spawn = session.newJavaPacket(0x0C, 48);
+        ProtocolUtils.writeVarInt(javaId, spawn);
+        spawn.writeLong(playerId.getMostSignificantBits());
+        spawn.writeLong(playerId.getLeastSignificantBits());
+        writeFixedPoint(spawn, x, y, z);
+        spawn.writeByte(yaw);
+        spawn.writeByte(pitch);
+        spawn.writeShort(0);
+        writeJavaEntityFlags(spawn, flags);
+        session.sendToJava(spawn);
+        session.getMovement().entitySpawned(javaId, x, y, z, yaw * 360f / 256, pitch * 360f / 256);
+    }
+    private static void addMob(PeClient session, ByteBuf in) {
+        int peId = in.readInt();
+        int javaType = javaMobType(in.readInt());
+        float x = in.readFloat();
+        float y = in.readFloat();
+        float z = in.readFloat();
+        byte yaw = in.readByte();
+        byte pitch = in.readByte();
+        if (javaType < 0) {
+            return;
+        }
+        byte flags = readPeEntityFlags(in);
+        int javaId = session.getEntityIds().map(peId);
+        ByteBuf spawn = session.newJavaPacket(0x0F, 40);
+        ProtocolUtils.writeVarInt(javaId, spawn);
+        spawn.writeByte(javaType);
+        writeFixedPoint(spawn, x, y, z);
+        spawn.writeByte(yaw);
+        spawn.writeByte(pitch);
+        spawn.writeByte(yaw);
+        spawn.writeShort(0);
+        spawn.writeShort(0);
+        spawn.writeShort(0);
+        writeJavaEntityFlags(spawn, flags);
+        session.sendToJava(spawn);
+        session.getMovement().entitySpawned(javaId, x, y, z, yaw * 360f / 256, pitch * 360f / 256);
+    }
+    // PE 0.8 mob type IDs to their 1.8 Spawn Mob types; anything unlisted is not spawned on the Java side.
+    private static int javaMobType(int peType) {
+        switch (peType) {
+            case 10:
+                return 93;
+            case 11:
+                return 92;
+            case 12:
+                return 90;
+            case 13:
+                return 91;
+            case 32:
+                return 54;
+            case 33:
+                return 50;
+            case 34:
+                return 51;
+            case 35:
+                return 52;
+            case 36:
+                return 57;
+            default:
+                return -1;
+        }
+    }
+    // Only the entity flags entry (index 0: on fire, sneaking, ...) is carried over. Both editions encode it as a byte
+    // at index 0, while the higher indices mean different things and would make the Java client reject the packet.
+    private static void setEntityData(PeClient session, ByteBuf in) {
+        int javaId = session.getEntityIds().toJava(in.readInt());
+        if (javaId == EntityIdMap.NO_ENTITY) {
+            return;
+        }
+        ByteBuf metadata = session.newJavaPacket(0x1C, 8);
+        ProtocolUtils.writeVarInt(javaId, metadata);
+        writeJavaEntityFlags(metadata, readPeEntityFlags(in));
+        session.sendToJava(metadata);
+    }
+    private static byte readPeEntityFlags(ByteBuf in) {
+        byte flags = 0;
+        while (in.isReadable()) {
+            int header = in.readUnsignedByte();
+            if (header == 0x7F) {
+                break;
+            }
+            int type = header >>> 5;
+            if (type == 0 && (header & 0x1F) == 0) {
+                flags = in.getByte(in.readerIndex());
+            }
+            switch (type) {
+                case 0:
+                    in.skipBytes(1);
+                    break;
+                case 1:
+                    in.skipBytes(2);
+                    break;
+                case 2:
+                case 3:
+                    in.skipBytes(4);
+                    break;
+                case 4:
+                    in.skipBytes(in.readUnsignedShort());
+                    break;
+                case 5:
+                    in.skipBytes(5);
+                    break;
+                case 6:
+                    in.skipBytes(12);
+                    break;
+                default:
+                    return flags;
+            }
+        }
+        return flags;
+    }
+    private static void writeJavaEntityFlags(ByteBuf out, byte flags) {
+        out.writeByte(0);
+        out.writeByte(flags);
+        out.writeByte(0x7F);
+    }
+    private static void writeFixedPoint(ByteBuf out, float x, float y, float z) {
+        out.writeInt((int) Math.floor(x * 32));
+        out.writeInt((int) Math.floor(y * 32));
+        out.writeInt((int) Math.floor(z * 32));
+    }
+    private static UUID remotePlayerId(long clientId) {
+        return new UUID(0x5045L << 48 | (clientId >>> 16), clientId);
+    }
+    private static void removePlayer(PeClient session, ByteBuf in) {
+        int javaId = session.getEntityIds().unmap(in.readInt());
+        long clientId = in.readLong();
+        if (javaId == EntityIdMap.NO_ENTITY) {
+            return;
+        }
+        session.getMovement().entityRemoved(javaId);
+        sendDestroy(session, javaId);
+        UUID playerId = remotePlayerId(clientId);
+        ByteBuf listItem = session.newJavaPacket(0x38, 18);
+        ProtocolUtils.writeVarInt(4, listItem);
+        ProtocolUtils.writeVarInt(1, listItem);
+        listItem.writeLong(playerId.getMostSignificantBits());
+        listItem.writeLong(playerId.getLeastSignificantBits());
+        session.sendToJava(listItem);
+    }
+    private static void removeEntity(PeClient session, ByteBuf in) {
+        int javaId = session.getEntityIds().unmap(in.readInt());
+        if (javaId == EntityIdMap.NO_ENTITY) {
+            return;
+        }
+        session.getMovement().entityRemoved(javaId);
+        sendDestroy(session, javaId);
+    }
+    private static void sendDestroy(PeClient session, int javaId) {
+        ByteBuf destroy = session.newJavaPacket(0x13, 6);
+        ProtocolUtils.writeVarInt(1, destroy);
+        ProtocolUtils.writeVarInt(javaId, destroy);
+        session.sendToJava(destroy);
+    }
+    private static void chunkData(PeClient session, ByteBuf in) {
+        int chunkX = in.readInt();
+        int chunkZ = in.readInt();
+        ChunkCache cache = session.getChunkCache();
+        long contentHash = ChunkCache.hash(in, in.readerIndex(), in.readableBytes());
+        ByteBuf chunk = cache.acquire(chunkX, chunkZ, contentHash);
+        if (chunk == null) {
+            ByteBuf translated = ChunkTranslator.translate(session.getJavaClientChannel().alloc(), chunkX, chunkZ, in);
+            chunk = cache.put(chunkX, chunkZ, contentHash, translated);
+        }
+        // The streamer sends duplicates of the cached packet, which JavaPacketEncoder never frames in place.
+        session.getChunkStreamer().enqueue(chunkX, chunkZ, chunk);
+    }
+    private static void updateBlock(PeClient session, ByteBuf in) {
+        int x = in.readInt();
+        int z = in.readInt();
+        int y = in.readUnsignedByte();
+        int block = in.readUnsignedByte();
+        int meta = in.readUnsignedByte() & 0x0F;
+        session.getChunkCache().invalidate(x >> 4, z >> 4);
+        ByteBuf blockChange = session.newJavaPacket(0x23, 11);
+        blockChange.writeLong(((long) (x & 0x3FFFFFF) << 38) | ((long) (y & 0xFFF) << 26) | (z & 0x3FFFFFF));
+        ProtocolUtils.writeVarInt(IdMappings.peToJavaBlock(block, meta), blockChange);
+        if (!session.getChunkStreamer().deferBlockChange(x >> 4, z >> 4, blockChange)) {
+            session.sendWorldDataToJava(blockChange);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package org.smnetworking;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.handler.codec.DecoderException;
 import io.netty.handler.codec.EncoderException;
 
+import java.net.Inet4Address;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
@@ -10,7 +12,34 @@ import java.nio.charset.StandardCharsets;
 public class ProtocolUtils {
     private static final int MAX_VARINT_SIZE = 5;
     private static final int MAX_STRING_LENGTH = 32767;
+    // VarInt byte count indexed by Integer.numberOfLeadingZeros(value).
+    private static final byte[] VARINT_SIZES = new byte[33];
+    static {
+        for (int leadingZeros = 0; leadingZeros <= 32; leadingZeros++) {
+            VARINT_SIZES[leadingZeros] = (byte) Math.max(1, (32 - leadingZeros + 6) / 7);
+        }
+    }
     public static int readVarInt(ByteBuf buf) {
+        int readerIndex = buf.readerIndex();
+        if (buf.writerIndex() - readerIndex >= 3) {
+            // One bounds-checked load covers the 1-3 byte encodings used by nearly every length and packet ID.
+            int medium = buf.getUnsignedMediumLE(readerIndex);
+            if ((medium & 0x80) == 0) {
+                buf.readerIndex(readerIndex + 1);
+                return medium & 0x7F;
+            }
+            if ((medium & 0x8000) == 0) {
+                buf.readerIndex(readerIndex + 2);
+                return (medium & 0x7F) | ((medium >>> 1) & 0x3F80);
+            }
+            if ((medium & 0x800000) == 0) {
+                buf.readerIndex(readerIndex + 3);
+                return (medium & 0x7F) | ((medium >>> 1) & 0x3F80) | ((medium >>> 2) & 0x1FC000);
+            }
+        }
+        return readVarIntSlow(buf);
+    }
+    private static int readVarIntSlow(ByteBuf buf) {
         int value = 0;
         int size = 0;
         byte b;
@@ -24,24 +53,31 @@ public class ProtocolUtils {
         return value;
     }
     public static void writeVarInt(int value, ByteBuf buf) {
-        do {
-            byte temp = (byte) (value & 0x7F);
-            if ((value >>> 7) != 0) {
-                temp |= 0x80;
-            }
-            buf.writeByte(temp);
-            value >>>= 7;
-        } while (value != 0);
+        if ((value & ~0x7F) == 0) {
+            buf.writeByte(value);
+        } else if ((value & ~0x3FFF) == 0) {
+            buf.writeShort(((value & 0x7F | 0x80) << 8) | (value >>> 7));
+        } else if ((value & ~0x1FFFFF) == 0) {
+            buf.writeMedium(((value & 0x7F | 0x80) << 16) | ((value >>> 7 & 0x7F | 0x80) << 8) | (value >>> 14));
+        } else {
+            do {
+                byte temp = (byte) (value & 0x7F);
+                if ((value >>> 7) != 0) {
+                    temp |= 0x80;
+                }
+                buf.writeByte(temp);
+                value >>>= 7;
+            } while (value != 0);
+        }
     }
     public static int getVarIntSize(int value) {
-        int size = 0;
-        do {
-            size++;
-            value >>>= 7;
-        } while (value != 0);
-        return size;
+        return VARINT_SIZES[Integer.numberOfLeadingZeros(value)];
     }
     public static String readString(ByteBuf buf) {
+        return readString(buf, null);
+    }
+    // Decodes straight from the buffer; with a cache, short repeated values come back as the same String without allocating.
+    public static String readString(ByteBuf buf, StringInternCache cache) {
         int length = readVarInt(buf);
         if (length < 0 || length > MAX_STRING_LENGTH) {
             throw new DecoderException("String length out of bounds: " + length);
@@ -49,17 +85,21 @@ public class ProtocolUtils {
         if (buf.readableBytes() < length) {
             throw new DecoderException("Buffer too short for string of length " + length);
         }
-        byte[] bytes = new byte[length];
-        buf.readBytes(bytes);
-        return new String(bytes, StandardCharsets.UTF_8);
+        return decodeString(buf, length, cache);
     }
     public static void writeString(String value, ByteBuf buf) {
-        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
-        if (bytes.length > MAX_STRING_LENGTH) {
-            throw new DecoderException("String too long: " + bytes.length + " bytes");
+        int length = ByteBufUtil.utf8Bytes(value);
+        if (length > MAX_STRING_LENGTH) {
+            throw new EncoderException("String too long: " + length + " bytes");
         }
-        writeVarInt(bytes.length, buf);
-        buf.writeBytes(bytes);
+        writeVarInt(length, buf);
+        ByteBufUtil.reserveAndWriteUtf8(buf, value, length);
+    }
+    private static String decodeString(ByteBuf buf, int length, StringInternCache cache) {
+        int index = buf.readerIndex();
+        String value = cache != null ? cache.get(buf, index, length) : buf.toString(index, length, StandardCharsets.UTF_8);
+        buf.readerIndex(index + length);
+        return value;
     }
     public static long readLong(ByteBuf buf) {
         if (buf.readableBytes() < 8) {
@@ -98,27 +138,59 @@ public class ProtocolUtils {
         buf.writeLongLE(value);
     }
     public static String readPEString(ByteBuf buf) {
-        short length = readShortLE(buf);
-        if (length < 0) {
-            throw new DecoderException("PE String length out of bounds: " + length);
+        return readPEString(buf, null);
+    }
+    public static String readPEString(ByteBuf buf, StringInternCache cache) {
+        if (buf.readableBytes() < 2) {
+            throw new DecoderException("Buffer too short for PE string length");
         }
+        int length = buf.readUnsignedShort();
         if (buf.readableBytes() < length) {
             throw new DecoderException("Buffer too short for PE string of length " + length);
         }
-        byte[] bytes = new byte[length];
-        buf.readBytes(bytes);
-        return new String(bytes, StandardCharsets.UTF_8);
+        return decodeString(buf, length, cache);
     }
     public static void writePEString(String value, ByteBuf buf) {
-        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
-        writeShortLE(bytes.length, buf);
-        buf.writeBytes(bytes);
+        int chars = value.length();
+        if (isAscii(value, chars)) {
+            if (chars > 0xFFFF) {
+                throw new EncoderException("PE string too long: " + chars + " bytes");
+            }
+            buf.writeShort(chars);
+            buf.writeCharSequence(value, StandardCharsets.US_ASCII);
+            return;
+        }
+        int length = ByteBufUtil.utf8Bytes(value);
+        if (length > 0xFFFF) {
+            throw new EncoderException("PE string too long: " + length + " bytes");
+        }
+        buf.writeShort(length);
+        ByteBufUtil.reserveAndWriteUtf8(buf, value, length);
+    }
+    private static boolean isAscii(String value, int chars) {
+        for (int i = 0; i < chars; i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
     }
     public static long generateClientGuid() {
         long guid = System.nanoTime();
         return guid;
     }
     public static InetSocketAddress readPEAddress(ByteBuf buf) {
+        long packed = readPEAddressPacked(buf);
+        int ip = (int) (packed >>> 16);
+        try {
+            InetAddress address = InetAddress.getByAddress(new byte[]{(byte) (ip >>> 24), (byte) (ip >>> 16), (byte) (ip >>> 8), (byte) ip});
+            return new InetSocketAddress(address, (int) (packed & 0xFFFF));
+        } catch (UnknownHostException e) {
+            throw new DecoderException("Failed to decode PE Address IP bytes", e);
+        }
+    }
+    // Same (ip << 16) | port layout as PeSessionDemultiplexer.sessionKey, so no InetAddress is ever materialized.
+    public static long readPEAddressPacked(ByteBuf buf) {
         if (buf.readableBytes() < 7) {
             throw new DecoderException("Buffer too short for PE Address");
         }
@@ -126,24 +198,24 @@ public class ProtocolUtils {
         if (version != 4) {
             throw new DecoderException("Unsupported PE Address version: " + version);
         }
-        byte[] ipBytes = new byte[4];
-        buf.readBytes(ipBytes);
-        int port = buf.readUnsignedShort();
-        try {
-            InetAddress address = InetAddress.getByAddress(ipBytes);
-            return new InetSocketAddress(address, port);
-        } catch (UnknownHostException e) {
-            throw new DecoderException("Failed to decode PE Address IP bytes", e);
-        }
+        long ip = buf.readUnsignedInt();
+        return (ip << 16) | buf.readUnsignedShort();
     }
     public static void writePEAddress(InetSocketAddress address, ByteBuf buf) {
         InetAddress inetAddress = address.getAddress();
-        byte[] ipBytes = inetAddress.getAddress();
-        if (ipBytes.length != 4) {
+        if (!(inetAddress instanceof Inet4Address)) {
             throw new EncoderException("Only IPv4 addresses are supported for PE Address encoding");
         }
+        writePEAddress(((packIPv4(inetAddress) & 0xFFFFFFFFL) << 16) | (address.getPort() & 0xFFFF), buf);
+    }
+    // Built from the address bytes rather than Inet4Address.hashCode(), whose value is not specified to be the address.
+    public static int packIPv4(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+    public static void writePEAddress(long packedAddress, ByteBuf buf) {
         buf.writeByte(4);
-        buf.writeBytes(ipBytes);
-        buf.writeShort(address.getPort());
+        buf.writeInt((int) (packedAddress >>> 16));
+        buf.writeShort((int) packedAddress);
     }
-}
\ No newline at end of file
+}
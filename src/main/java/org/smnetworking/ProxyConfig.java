@@ -0,0 +1,63 @@
+package org.smnetworking;
+public final class ProxyConfig {
+    public static final int BOSS_THREADS = Integer.getInteger("proxy.bossThreads", 1);
+    public static final int WORKER_THREADS = Integer.getInteger("proxy.workerThreads", Runtime.getRuntime().availableProcessors());
+    public static final boolean NATIVE_TRANSPORT = Boolean.parseBoolean(System.getProperty("proxy.nativeTransport", "true"));
+    public static final boolean EDGE_TRIGGERED = Boolean.parseBoolean(System.getProperty("proxy.epoll.edgeTriggered", "true"));
+    public static final boolean TCP_QUICKACK = Boolean.parseBoolean(System.getProperty("proxy.epoll.tcpQuickAck", "true"));
+    public static final boolean REUSE_PORT = Boolean.parseBoolean(System.getProperty("proxy.epoll.reusePort", "true"));
+    public static final int UDP_BATCH_READS = Integer.getInteger("proxy.epoll.udpBatchReads", 16);
+    public static final int UDP_MAX_DATAGRAM_SIZE = Integer.getInteger("proxy.udpMaxDatagramSize", 1500);
+    public static final int MAX_FRAME_LENGTH = Integer.getInteger("proxy.java.maxFrameLength", 2097151);
+    public static final int EXPLICIT_FLUSH_AFTER_FLUSHES = Integer.getInteger("proxy.java.explicitFlushAfterFlushes", 256);
+    public static final int COMPRESSION_THRESHOLD = Integer.getInteger("proxy.java.compressionThreshold", 256);
+    public static final int COMPRESSION_LEVEL = Integer.getInteger("proxy.java.compressionLevel", 6);
+    public static final int COMPRESSION_OFFLOAD_THRESHOLD = Integer.getInteger("proxy.java.compressionOffloadThreshold", -1);
+    public static final int COMPRESSION_OFFLOAD_THREADS = Integer.getInteger("proxy.java.compressionOffloadThreads", 2);
+    public static final int ZLIB_POOL_SIZE = Integer.getInteger("proxy.zlibPoolSize", 256);
+    public static final int RAKNET_WINDOW = Integer.getInteger("proxy.raknet.window", 1024);
+    public static final int RAKNET_TICK_MILLIS = Integer.getInteger("proxy.raknet.tickMillis", 10);
+    public static final int RAKNET_SESSION_TIMEOUT_MILLIS = Integer.getInteger("proxy.raknet.sessionTimeoutMillis", 10000);
+    public static final int SPLIT_MAX_COUNT = Integer.getInteger("proxy.raknet.split.maxCount", 1024);
+    public static final int SPLIT_MAX_CONCURRENT = Integer.getInteger("proxy.raknet.split.maxConcurrent", 16);
+    public static final long SPLIT_SESSION_MAX_BYTES = Long.getLong("proxy.raknet.split.sessionMaxBytes", 4L * 1024 * 1024);
+    public static final long SPLIT_GLOBAL_MAX_BYTES = Long.getLong("proxy.raknet.split.globalMaxBytes", 256L * 1024 * 1024);
+    public static final int SPLIT_TIMEOUT_MILLIS = Integer.getInteger("proxy.raknet.split.timeoutMillis", 5000);
+    public static final int MTU_PROBE_TIMEOUT_MILLIS = Integer.getInteger("proxy.raknet.mtuProbeTimeoutMillis", 500);
+    public static final int MTU_PROBE_ATTEMPTS = Integer.getInteger("proxy.raknet.mtuProbeAttempts", 2);
+    public static final long CHUNK_CACHE_MAX_BYTES = Long.getLong("proxy.chunkCache.maxBytes", 64L * 1024 * 1024);
+    public static final int CHUNK_REQUEST_RADIUS = Integer.getInteger("proxy.chunkRequestRadius", 4);
+    public static final int STATUS_REFRESH_MILLIS = Integer.getInteger("proxy.status.refreshMillis", 5000);
+    public static final int STATUS_MAX_PLAYERS = Integer.getInteger("proxy.status.maxPlayers", 20);
+    public static final int LOG_RING_SIZE = Integer.getInteger("proxy.log.ringSize", 8192);
+    public static final int LOG_TRACE_SAMPLE_EVERY = Math.max(1, Integer.getInteger("proxy.log.traceSampleEvery", 20));
+    public static final String METRICS_HOST = System.getProperty("proxy.metrics.host", "127.0.0.1");
+    public static final int METRICS_PORT = Integer.getInteger("proxy.metrics.port", 9225);
+    public static final int STRING_INTERN_SLOTS = Integer.getInteger("proxy.stringIntern.slots", 4096);
+    public static final int STRING_INTERN_MAX_LENGTH = Integer.getInteger("proxy.stringIntern.maxLength", 32);
+    public static final int PE_POOL_SIZE = Integer.getInteger("proxy.pePool.size", 0);
+    public static final int PE_POOL_MAINTAIN_MILLIS = Integer.getInteger("proxy.pePool.maintainMillis", 2000);
+    public static final int PE_POOL_MAX_IDLE_MILLIS = Integer.getInteger("proxy.pePool.maxIdleMillis", 60000);
+    public static final int ADMISSION_MAX_HANDSHAKES = Integer.getInteger("proxy.admission.maxHandshakes", 32);
+    public static final int ADMISSION_QUEUE_SIZE = Integer.getInteger("proxy.admission.queueSize", 512);
+    public static final int ADMISSION_CONNECTIONS_PER_SECOND = Integer.getInteger("proxy.admission.connectionsPerSecond", 2);
+    public static final int ADMISSION_CONNECTION_BURST = Integer.getInteger("proxy.admission.connectionBurst", 8);
+    public static final int ADMISSION_STATUS_PER_SECOND = Integer.getInteger("proxy.admission.statusPerSecond", 4);
+    public static final int ADMISSION_STATUS_BURST = Integer.getInteger("proxy.admission.statusBurst", 16);
+    public static final int JAVA_WRITE_LOW_WATER_MARK = Integer.getInteger("proxy.java.writeLowWaterMark", 64 * 1024);
+    public static final int JAVA_WRITE_HIGH_WATER_MARK = Integer.getInteger("proxy.java.writeHighWaterMark", 256 * 1024);
+    public static final int JAVA_DEFERRED_MAX_BYTES = Integer.getInteger("proxy.java.deferredMaxBytes", 2 * 1024 * 1024);
+    public static final int JAVA_PORT = Integer.getInteger("proxy.java.port", 25565);
+    public static final String PE_BACKENDS = System.getProperty("proxy.backends", "nostalgiape.online:19132");
+    public static final String BACKEND_ROUTING = System.getProperty("proxy.backends.routing", "least-sessions");
+    public static final int MOVEMENT_TICK_MILLIS = Integer.getInteger("proxy.movement.tickMillis", 50);
+    public static final int MOVEMENT_IMMEDIATE_DISTANCE = Integer.getInteger("proxy.movement.immediateDistance", 4);
+    public static final int MOVEMENT_IMMEDIATE_ROTATION = Integer.getInteger("proxy.movement.immediateRotationDegrees", 90);
+    public static final int CHUNK_TICK_MILLIS = Integer.getInteger("proxy.chunks.tickMillis", 50);
+    public static final int CHUNK_BUDGET_INITIAL_BYTES = Integer.getInteger("proxy.chunks.budgetInitialBytes", 256 * 1024);
+    public static final int CHUNK_BUDGET_MIN_BYTES = Integer.getInteger("proxy.chunks.budgetMinBytes", 32 * 1024);
+    public static final int CHUNK_BUDGET_MAX_BYTES = Integer.getInteger("proxy.chunks.budgetMaxBytes", 2 * 1024 * 1024);
+    public static final int CHUNK_BULK_MAX_CHUNKS = Integer.getInteger("proxy.chunks.bulkMaxChunks", 10);
+    private ProxyConfig() {
+    }
+}
@@ -0,0 +1,72 @@
+package org.smnetworking;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+public final class ProxyConsole {
+    private static volatile BackendRegistry backends;
+    private ProxyConsole() {
+    }
+    public static void start(BackendRegistry registry) {
+        backends = registry;
+        Thread thread = new Thread(ProxyConsole::readCommands, "proxy-console");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    private static void readCommands() {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                handle(line.trim().split("\\s+"));
+            }
+        } catch (IOException e) {
+            ProxyLog.warn("Console input closed: " + e.getMessage());
+        }
+    }
+    private static void handle(String[] args) {
+        switch (args[0].toLowerCase()) {
+            case "":
+                break;
+            case "loglevel":
+                if (args.length == 2) {
+                    ProxyLog.setLevel(ProxyLog.parseLevel(args[1]));
+                    ProxyLog.info("Log level set to " + args[1].toUpperCase());
+                    return;
+                }
+                ProxyLog.info("Usage: loglevel <TRACE|DEBUG|INFO|WARN|ERROR|OFF>");
+                break;
+            case "trace":
+                if (args.length >= 2) {
+                    boolean enable = args.length < 3 || !args[2].equalsIgnoreCase("off");
+                    ProxyLog.setTraced(args[1], enable);
+                    ProxyLog.info("Packet tracing " + (enable ? "enabled" : "disabled") + " for " + args[1]);
+                    return;
+                }
+                ProxyLog.info("Usage: trace <player> [on|off]");
+                break;
+            case "backends":
+                for (PeBackend backend : backends.backends()) {
+                    ProxyLog.info(backend.describe() + ": " + (backend.isHealthy() ? "healthy" : "unhealthy") + (backend.isDrainRequested() ? ", draining" : "")
+                            + ", " + backend.getSessions() + " sessions, rtt " + backend.getRttNanos() / 1000 + "us");
+                }
+                break;
+            case "drain":
+                if (args.length >= 2) {
+                    PeBackend backend = backends.find(args[1]);
+                    if (backend == null) {
+                        ProxyLog.info("Unknown backend " + args[1] + ". Use 'backends' to list them.");
+                        return;
+                    }
+                    boolean drain = args.length < 3 || !args[2].equalsIgnoreCase("off");
+                    backend.setDrainRequested(drain);
+                    ProxyLog.info("Backend " + backend.describe() + (drain ? " draining, no new sessions will be routed to it." : " accepting new sessions again."));
+                    return;
+                }
+                ProxyLog.info("Usage: drain <host:port> [on|off]");
+                break;
+            default:
+                ProxyLog.info("Unknown command '" + args[0] + "'. Commands: loglevel, trace, backends, drain");
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.smnetworking;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+public final class ProxyLog {
+    public static final int TRACE = 0;
+    public static final int DEBUG = 1;
+    public static final int INFO = 2;
+    public static final int WARN = 3;
+    public static final int ERROR = 4;
+    public static final int OFF = 5;
+    private static final String[] LEVEL_NAMES = {"TRACE", "DEBUG", "INFO", "WARN", "ERROR"};
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static volatile int level = parseLevel(System.getProperty("proxy.log.level", "INFO"));
+    // Bounded multi-producer ring: producers claim a slot by CAS on the tail, the writer thread publishes slots back by sequence.
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(2, ProxyConfig.LOG_RING_SIZE - 1)) << 1;
+    private static final int MASK = CAPACITY - 1;
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final int[] levels = new int[CAPACITY];
+    private static final long[] timestamps = new long[CAPACITY];
+    private static final String[] threads = new String[CAPACITY];
+    private static final String[] messages = new String[CAPACITY];
+    private static final Throwable[] throwables = new Throwable[CAPACITY];
+    private static final AtomicLong tail = new AtomicLong();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static long head;
+    private static long reportedDrops;
+    private static volatile boolean running = true;
+    private static final Thread writer;
+    // Copy-on-write list of players whose packets are traced; sessions cache their membership per generation.
+    private static volatile String[] tracedPlayers = new String[0];
+    private static volatile int traceGeneration;
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        writer = new Thread(ProxyLog::drainLoop, "proxy-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+    private ProxyLog() {
+    }
+    public static boolean isEnabled(int messageLevel) {
+        return messageLevel >= level;
+    }
+    public static boolean isDebugEnabled() {
+        return DEBUG >= level;
+    }
+    public static void setLevel(int newLevel) {
+        level = newLevel;
+    }
+    public static int getLevel() {
+        return level;
+    }
+    public static void debug(String message) {
+        if (DEBUG >= level) {
+            publish(DEBUG, message, null);
+        }
+    }
+    public static void info(String message) {
+        if (INFO >= level) {
+            publish(INFO, message, null);
+        }
+    }
+    public static void warn(String message) {
+        if (WARN >= level) {
+            publish(WARN, message, null);
+        }
+    }
+    public static void error(String message) {
+        error(message, null);
+    }
+    public static void error(String message, Throwable cause) {
+        if (ERROR >= level) {
+            publish(ERROR, message, cause);
+        }
+    }
+    // Packet traces bypass the level threshold; callers gate them with isTraced so untraced sessions pay one volatile read.
+    public static void tracePacket(String message) {
+        publish(TRACE, message, null);
+    }
+    public static void setTraced(String playerName, boolean traced) {
+        synchronized (ProxyLog.class) {
+            String[] current = tracedPlayers;
+            int existing = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].equalsIgnoreCase(playerName)) {
+                    existing = i;
+                }
+            }
+            String[] updated;
+            if (traced && existing < 0) {
+                updated = new String[current.length + 1];
+                System.arraycopy(current, 0, updated, 0, current.length);
+                updated[current.length] = playerName;
+            } else if (!traced && existing >= 0) {
+                updated = new String[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, existing);
+                System.arraycopy(current, existing + 1, updated, existing, current.length - existing - 1);
+            } else {
+                return;
+            }
+            tracedPlayers = updated;
+            traceGeneration++;
+        }
+    }
+    // Movement and chunk traffic dominate traces, so those IDs are only logged one in LOG_TRACE_SAMPLE_EVERY.
+    static boolean isHighVolume(boolean fromJava, int packetId) {
+        if (fromJava) {
+            return packetId >= 0x03 && packetId <= 0x06;
+        }
+        return packetId == PeProtocol.MOVE_ENTITY || packetId == PeProtocol.MOVE_ENTITY_POSROT || packetId == PeProtocol.ROTATE_HEAD || packetId == PeProtocol.MOVE_PLAYER || packetId == PeProtocol.CHUNK_DATA;
+    }
+    static int traceGeneration() {
+        return traceGeneration;
+    }
+    static boolean isPlayerTraced(String playerName) {
+        for (String traced : tracedPlayers) {
+            if (traced.equalsIgnoreCase(playerName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    public static long getDropped() {
+        return dropped.get();
+    }
+    public static void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    public static int parseLevel(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return name.equalsIgnoreCase("OFF") ? OFF : INFO;
+    }
+    private static void publish(int messageLevel, String message, Throwable cause) {
+        long claimed;
+        int slot;
+        while (true) {
+            claimed = tail.get();
+            slot = (int) (claimed & MASK);
+            long diff = sequences.get(slot) - claimed;
+            if (diff == 0) {
+                if (tail.compareAndSet(claimed, claimed + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                // The writer has not consumed this slot from the previous lap yet: the ring is full.
+                dropped.incrementAndGet();
+                return;
+            }
+            // diff > 0: another producer already claimed this position, reload the tail and retry.
+        }
+        levels[slot] = messageLevel;
+        timestamps[slot] = System.currentTimeMillis();
+        threads[slot] = Thread.currentThread().getName();
+        messages[slot] = message;
+        throwables[slot] = cause;
+        sequences.set(slot, claimed + 1);
+    }
+    private static void drainLoop() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            boolean drained = false;
+            while (true) {
+                int slot = (int) (head & MASK);
+                if (sequences.get(slot) != head + 1) {
+                    break;
+                }
+                int messageLevel = levels[slot];
+                PrintStream stream = messageLevel >= WARN ? System.err : System.out;
+                line.setLength(0);
+                TIME_FORMAT.formatTo(Instant.ofEpochMilli(timestamps[slot]), line);
+                line.append(' ').append(LEVEL_NAMES[messageLevel]).append(" [").append(threads[slot]).append("] ").append(messages[slot]);
+                stream.println(line);
+                Throwable cause = throwables[slot];
+                if (cause != null) {
+                    cause.printStackTrace(stream);
+                }
+                messages[slot] = null;
+                throwables[slot] = null;
+                threads[slot] = null;
+                sequences.set(slot, head + CAPACITY);
+                head++;
+                drained = true;
+            }
+            long lost = dropped.get() - reportedDrops;
+            if (lost > 0) {
+                reportedDrops += lost;
+                System.err.println("WARN [proxy-log-writer] dropped " + lost + " log records because the ring was full");
+            }
+            if (!drained) {
+                if (!running) {
+                    System.out.flush();
+                    return;
+                }
+                LockSupport.parkNanos(1_000_000L);
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.smnetworking;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.util.concurrent.atomic.LongAdder;
+public final class ProxyMetrics implements ProxyMetricsMXBean {
+    public static final int JAVA_TO_PE = 0;
+    public static final int PE_TO_JAVA = 1;
+    private static final String[] DIRECTIONS = {"java_to_pe", "pe_to_java"};
+    private static final int MAX_PACKET_IDS = 256;
+    // Extra per-ID slot for IDs that do not fit a byte (Java IDs are VarInts), so they never land on a real ID's count.
+    private static final int OTHER_PACKET_IDS = MAX_PACKET_IDS;
+    private static final LongAdder[][] packets = newCounters();
+    private static final LongAdder[][] bytes = newCounters();
+    private static final LatencyHistogram[] translation = {new LatencyHistogram(), new LatencyHistogram()};
+    private static final LatencyHistogram rakNetRtt = new LatencyHistogram();
+    private static final LongAdder rakNetRetransmits = new LongAdder();
+    private static final LongAdder rakNetNacks = new LongAdder();
+    private static final LongAdder javaShed = new LongAdder();
+    private static final LongAdder peTranslationFailures = new LongAdder();
+    private static final PeClient.PeConnectionState[] STATES = PeClient.PeConnectionState.values();
+    private static final LongAdder[] sessionStates = new LongAdder[STATES.length];
+    private static volatile EventLoopGroup[] eventLoopGroups = new EventLoopGroup[0];
+    private static volatile AdmissionController admission;
+    private static volatile BackendRegistry backends;
+    static final ProxyMetrics INSTANCE = new ProxyMetrics();
+    static {
+        for (int i = 0; i < sessionStates.length; i++) {
+            sessionStates[i] = new LongAdder();
+        }
+    }
+    private ProxyMetrics() {
+    }
+    private static LongAdder[][] newCounters() {
+        LongAdder[][] counters = new LongAdder[2][MAX_PACKET_IDS + 1];
+        for (LongAdder[] direction : counters) {
+            for (int i = 0; i < direction.length; i++) {
+                direction[i] = new LongAdder();
+            }
+        }
+        return counters;
+    }
+    static void recordPacket(int direction, int packetId, int length) {
+        int slot = packetId >= 0 && packetId < MAX_PACKET_IDS ? packetId : OTHER_PACKET_IDS;
+        packets[direction][slot].increment();
+        bytes[direction][slot].add(length);
+    }
+    static void recordTranslation(int direction, long nanos) {
+        translation[direction].record(nanos);
+    }
+    static void recordPeTranslationFailure() {
+        peTranslationFailures.increment();
+    }
+    static void recordRakNetRtt(long nanos) {
+        rakNetRtt.record(nanos);
+    }
+    static void recordRakNetRetransmit() {
+        rakNetRetransmits.increment();
+    }
+    static void recordRakNetNack() {
+        rakNetNacks.increment();
+    }
+    static void recordJavaShed() {
+        javaShed.increment();
+    }
+    // DISCONNECTED is not tracked: it is where every session ends up, so the gauge would only ever grow.
+    static void sessionStateChanged(PeClient.PeConnectionState from, PeClient.PeConnectionState to) {
+        if (from == to) {
+            return;
+        }
+        if (from != PeClient.PeConnectionState.DISCONNECTED) {
+            sessionStates[from.ordinal()].decrement();
+        }
+        if (to != PeClient.PeConnectionState.DISCONNECTED) {
+            sessionStates[to.ordinal()].increment();
+        }
+    }
+    public static void monitorEventLoops(EventLoopGroup... groups) {
+        eventLoopGroups = groups.clone();
+    }
+    public static void monitorAdmission(AdmissionController controller) {
+        admission = controller;
+    }
+    public static void monitorBackends(BackendRegistry registry) {
+        backends = registry;
+    }
+    private static long sum(LongAdder[] counters) {
+        long total = 0;
+        for (LongAdder counter : counters) {
+            total += counter.sum();
+        }
+        return total;
+    }
+    static String scrape() {
+        StringBuilder out = new StringBuilder(16384);
+        out.append("# TYPE proxy_packets_total counter\n");
+        appendPerId(out, "proxy_packets_total", packets);
+        out.append("# TYPE proxy_packet_bytes_total counter\n");
+        appendPerId(out, "proxy_packet_bytes_total", bytes);
+        out.append("# TYPE proxy_translation_seconds histogram\n");
+        for (int direction = 0; direction < 2; direction++) {
+            translation[direction].appendPrometheus(out, "proxy_translation_seconds", "direction=\"" + DIRECTIONS[direction] + "\"", 8, 30, 1e-9);
+        }
+        out.append("# TYPE proxy_translation_failures_total counter\n");
+        out.append("proxy_translation_failures_total{direction=\"pe_to_java\"} ").append(peTranslationFailures.sum()).append('\n');
+        out.append("# TYPE proxy_raknet_rtt_seconds histogram\n");
+        rakNetRtt.appendPrometheus(out, "proxy_raknet_rtt_seconds", "", 16, 34, 1e-9);
+        out.append("# TYPE proxy_raknet_retransmits_total counter\n");
+        out.append("proxy_raknet_retransmits_total ").append(rakNetRetransmits.sum()).append('\n');
+        out.append("# TYPE proxy_raknet_nacks_total counter\n");
+        out.append("proxy_raknet_nacks_total ").append(rakNetNacks.sum()).append('\n');
+        out.append("# TYPE proxy_java_shed_packets_total counter\n");
+        out.append("proxy_java_shed_packets_total ").append(javaShed.sum()).append('\n');
+        out.append("# TYPE proxy_sessions gauge\n");
+        for (PeClient.PeConnectionState state : STATES) {
+            if (state != PeClient.PeConnectionState.DISCONNECTED) {
+                out.append("proxy_sessions{state=\"").append(state.name().toLowerCase()).append("\"} ").append(sessionStates[state.ordinal()].sum()).append('\n');
+            }
+        }
+        out.append("# TYPE proxy_event_loop_pending_tasks gauge\n");
+        int loopIndex = 0;
+        for (EventLoopGroup group : eventLoopGroups) {
+            for (EventExecutor executor : group) {
+                out.append("proxy_event_loop_pending_tasks{loop=\"").append(loopIndex++).append("\"} ").append(pendingTasks(executor)).append('\n');
+            }
+        }
+        out.append("# TYPE proxy_split_in_flight_bytes gauge\n");
+        out.append("proxy_split_in_flight_bytes ").append(SplitPacketAssembler.getGlobalInFlightBytes()).append('\n');
+        BackendRegistry registry = backends;
+        if (registry != null) {
+            out.append("# TYPE proxy_backend_sessions gauge\n");
+            for (PeBackend backend : registry.backends()) {
+                out.append("proxy_backend_sessions{backend=\"").append(backend.describe()).append("\"} ").append(backend.getSessions()).append('\n');
+            }
+            out.append("# TYPE proxy_backend_healthy gauge\n");
+            for (PeBackend backend : registry.backends()) {
+                out.append("proxy_backend_healthy{backend=\"").append(backend.describe()).append("\"} ").append(backend.isAcceptingSessions() ? 1 : 0).append('\n');
+            }
+            out.append("# TYPE proxy_backend_rtt_seconds gauge\n");
+            for (PeBackend backend : registry.backends()) {
+                out.append("proxy_backend_rtt_seconds{backend=\"").append(backend.describe()).append("\"} ").append(backend.getRttNanos() * 1e-9).append('\n');
+            }
+        }
+        AdmissionController controller = admission;
+        if (controller != null) {
+            out.append("# TYPE proxy_admission_in_flight gauge\n");
+            out.append("proxy_admission_in_flight ").append(controller.getInFlight()).append('\n');
+            out.append("# TYPE proxy_admission_queued gauge\n");
+            out.append("proxy_admission_queued ").append(controller.getQueued()).append('\n');
+            out.append("# TYPE proxy_admission_rejected_total counter\n");
+            out.append("proxy_admission_rejected_total{reason=\"connection_rate\"} ").append(controller.getRejectedConnections()).append('\n');
+            out.append("proxy_admission_rejected_total{reason=\"status_rate\"} ").append(controller.getRejectedStatus()).append('\n');
+            out.append("proxy_admission_rejected_total{reason=\"queue_full\"} ").append(controller.getRejectedLogins()).append('\n');
+        }
+        out.append("# TYPE proxy_log_dropped_total counter\n");
+        out.append("proxy_log_dropped_total ").append(ProxyLog.getDropped()).append('\n');
+        return out.toString();
+    }
+    private static void appendPerId(StringBuilder out, String name, LongAdder[][] counters) {
+        for (int direction = 0; direction < 2; direction++) {
+            for (int id = 0; id <= OTHER_PACKET_IDS; id++) {
+                long value = counters[direction][id].sum();
+                if (value != 0) {
+                    String label = id == OTHER_PACKET_IDS ? "other" : "0x" + Integer.toHexString(id);
+                    out.append(name).append("{direction=\"").append(DIRECTIONS[direction]).append("\",id=\"").append(label).append("\"} ").append(value).append('\n');
+                }
+            }
+        }
+    }
+    private static long pendingTasks(EventExecutor executor) {
+        return executor instanceof SingleThreadEventExecutor ? ((SingleThreadEventExecutor) executor).pendingTasks() : 0;
+    }
+    @Override
+    public long getActiveSessions() {
+        return sum(sessionStates);
+    }
+    @Override
+    public long getJavaToPePackets() {
+        return sum(packets[JAVA_TO_PE]);
+    }
+    @Override
+    public long getPeToJavaPackets() {
+        return sum(packets[PE_TO_JAVA]);
+    }
+    @Override
+    public long getJavaToPeBytes() {
+        return sum(bytes[JAVA_TO_PE]);
+    }
+    @Override
+    public long getPeToJavaBytes() {
+        return sum(bytes[PE_TO_JAVA]);
+    }
+    @Override
+    public long getJavaToPeTranslationP99Nanos() {
+        return translation[JAVA_TO_PE].quantile(0.99);
+    }
+    @Override
+    public long getPeToJavaTranslationP99Nanos() {
+        return translation[PE_TO_JAVA].quantile(0.99);
+    }
+    @Override
+    public long getRakNetRttP50Nanos() {
+        return rakNetRtt.quantile(0.5);
+    }
+    @Override
+    public long getRakNetRttP99Nanos() {
+        return rakNetRtt.quantile(0.99);
+    }
+    @Override
+    public long getRakNetRetransmits() {
+        return rakNetRetransmits.sum();
+    }
+    @Override
+    public long getRakNetNacks() {
+        return rakNetNacks.sum();
+    }
+    @Override
+    public long getEventLoopPendingTasks() {
+        long total = 0;
+        for (EventLoopGroup group : eventLoopGroups) {
+            for (EventExecutor executor : group) {
+                total += pendingTasks(executor);
+            }
+        }
+        return total;
+    }
+    @Override
+    public long getDroppedLogRecords() {
+        return ProxyLog.getDropped();
+    }
+}
@@ -0,0 +1,16 @@
+package org.smnetworking;
+public interface ProxyMetricsMXBean {
+    long getActiveSessions();
+    long getJavaToPePackets();
+    long getPeToJavaPackets();
+    long getJavaToPeBytes();
+    long getPeToJavaBytes();
+    long getJavaToPeTranslationP99Nanos();
+    long getPeToJavaTranslationP99Nanos();
+    long getRakNetRttP50Nanos();
+    long getRakNetRttP99Nanos();
+    long getRakNetRetransmits();
+    long getRakNetNacks();
+    long getEventLoopPendingTasks();
+    long getDroppedLogRecords();
+}
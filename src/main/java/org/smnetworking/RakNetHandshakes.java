@@ -0,0 +1,44 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+// Addresses are packed as (ip << 16) | port, the same layout as PE session keys.
+final class RakNetHandshakes {
+    static final byte[] MAGIC = {(byte) 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0x00, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0x12, (byte) 0x34, (byte) 0x56, (byte) 0x78};
+    static final byte PROTOCOL_VERSION = 0x05;
+    static final int OPEN_CONNECTION_REQUEST_2_SIZE = 34;
+    static final int CONNECTION_REQUEST_SIZE = 18;
+    static final int NEW_INCOMING_CONNECTION_SIZE = 1 + 11 * 7 + 16;
+    private static final long UNSPECIFIED_SYSTEM_ADDRESS = 0L;
+    private RakNetHandshakes() {
+    }
+    // Padded to the probed MTU minus IP/UDP headers: the reply only arrives if a datagram that large gets through.
+    static void writeOpenConnectionRequest1(ByteBuf out, int probeMtu) {
+        int payloadSize = probeMtu - RakNetSession.UDP_IP_OVERHEAD;
+        int start = out.writerIndex();
+        out.writeByte(0x05);
+        out.writeBytes(MAGIC);
+        out.writeByte(PROTOCOL_VERSION);
+        out.writeZero(payloadSize - (out.writerIndex() - start));
+    }
+    static void writeOpenConnectionRequest2(ByteBuf out, long server, int mtu, long clientGuid) {
+        out.writeByte(0x07);
+        out.writeBytes(MAGIC);
+        ProtocolUtils.writePEAddress(server, out);
+        out.writeShort(mtu);
+        out.writeLong(clientGuid);
+    }
+    static void writeConnectionRequest(ByteBuf out, long clientGuid, long time) {
+        out.writeByte(0x09);
+        out.writeLong(clientGuid);
+        out.writeLong(time);
+        out.writeByte(0);
+    }
+    static void writeNewIncomingConnection(ByteBuf out, long server, long serverTime, long clientTime) {
+        out.writeByte(0x13);
+        ProtocolUtils.writePEAddress(server, out);
+        for (int i = 0; i < 10; i++) {
+            ProtocolUtils.writePEAddress(UNSPECIFIED_SYSTEM_ADDRESS, out);
+        }
+        out.writeLong(serverTime);
+        out.writeLong(clientTime);
+    }
+}
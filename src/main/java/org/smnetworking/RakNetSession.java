@@ -0,0 +1,674 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+public class RakNetSession implements RakNetTimerWheel.ExpiryHandler {
+    public static final int UNRELIABLE = 0;
+    public static final int UNRELIABLE_SEQUENCED = 1;
+    public static final int RELIABLE = 2;
+    public static final int RELIABLE_ORDERED = 3;
+    public static final int RELIABLE_SEQUENCED = 4;
+    public static final int UNRELIABLE_WITH_ACK_RECEIPT = 5;
+    public static final int RELIABLE_WITH_ACK_RECEIPT = 6;
+    public static final int RELIABLE_ORDERED_WITH_ACK_RECEIPT = 7;
+    public static final int DATAGRAM_HEADER_SIZE = 4;
+    public static final int UDP_IP_OVERHEAD = 28;
+    private static final int ID_DATAGRAM = 0x84;
+    private static final int ID_ACK = 0xC0;
+    private static final int ID_NACK = 0xA0;
+    private static final int SEQ_MASK = 0xFFFFFF;
+    private static final int ORDER_CHANNELS = 32;
+    private static final int WINDOW = ProxyConfig.RAKNET_WINDOW;
+    private static final int WINDOW_MASK = WINDOW - 1;
+    // As wide as the reliable window: an ordered frame can be that far ahead after a loss, and it has already been ACKed.
+    private static final int ORDER_WINDOW = WINDOW;
+    private static final long MIN_RTO_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RTO_NANOS = TimeUnit.MILLISECONDS.toNanos(2000);
+    private static final long INITIAL_RTO_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final int MAX_SEND_ATTEMPTS = 10;
+    static {
+        if (Integer.bitCount(WINDOW) != 1 || WINDOW < 64) {
+            throw new ExceptionInInitializerError("proxy.raknet.window must be a power of two >= 64: " + WINDOW);
+        }
+    }
+    private final PeClient client;
+    private final Channel channel;
+    private final InetSocketAddress remoteAddress;
+    private final int mtu;
+    private final RakNetTimerWheel resendWheel;
+    private final SplitPacketAssembler splitAssembler;
+    private ScheduledFuture<?> tickFuture;
+    private boolean closed;
+    private int nextSendSeq;
+    private int nextMessageIndex;
+    private int nextSplitId;
+    private final int[] nextOrderIndex = new int[ORDER_CHANNELS];
+    private final ByteBuf[] sentBodies = new ByteBuf[WINDOW];
+    private final int[] sentSeqs = new int[WINDOW];
+    private final long[] sentTimes = new long[WINDOW];
+    private final byte[] sentAttempts = new byte[WINDOW];
+    private int unackedCount;
+    private final ArrayDeque<ByteBuf> sendBacklog = new ArrayDeque<>();
+    // Send attempts already made for each backlogged body, kept in step with sendBacklog so a parked retransmit keeps
+    // its backoff and still counts towards MAX_SEND_ATTEMPTS.
+    private final ArrayDeque<Integer> sendBacklogAttempts = new ArrayDeque<>();
+    private ByteBuf pendingBody;
+    private long framesSent;
+    private long datagramsSent;
+    private int highestReceivedSeq = SEQ_MASK;
+    private final long[] receivedSeqBits = new long[WINDOW >>> 6];
+    private final int[] ackQueue = new int[WINDOW];
+    private int ackCount;
+    private final int[] nackQueue = new int[WINDOW];
+    private int nackCount;
+    private int reliableBase;
+    private final long[] reliableBits = new long[WINDOW >>> 6];
+    private final int[] expectedOrderIndex = new int[ORDER_CHANNELS];
+    private final int[] highestSequencedIndex = new int[ORDER_CHANNELS];
+    private final ByteBuf[][] orderQueues = new ByteBuf[ORDER_CHANNELS][];
+    private long smoothedRttNanos = -1;
+    private long rttVarianceNanos;
+    private long rtoNanos = INITIAL_RTO_NANOS;
+    private long lastReceiveNanos;
+    private long retransmits;
+    private long nacksReceived;
+    private long duplicatesReceived;
+    public RakNetSession(PeClient client, Channel channel, InetSocketAddress remoteAddress, int mtu) {
+        this.client = client;
+        this.channel = channel;
+        this.remoteAddress = remoteAddress;
+        this.mtu = mtu;
+        long now = System.nanoTime();
+        this.resendWheel = new RakNetTimerWheel(256, WINDOW, TimeUnit.MILLISECONDS.toNanos(ProxyConfig.RAKNET_TICK_MILLIS), now);
+        this.lastReceiveNanos = now;
+        this.splitAssembler = new SplitPacketAssembler(channel.alloc());
+        Arrays.fill(highestSequencedIndex, -1);
+    }
+    public void start() {
+        tickFuture = channel.eventLoop().scheduleAtFixedRate(this::tick, ProxyConfig.RAKNET_TICK_MILLIS, ProxyConfig.RAKNET_TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (tickFuture != null) {
+            tickFuture.cancel(false);
+        }
+        for (int i = 0; i < WINDOW; i++) {
+            if (sentBodies[i] != null) {
+                sentBodies[i].release();
+                sentBodies[i] = null;
+            }
+        }
+        if (pendingBody != null) {
+            pendingBody.release();
+            pendingBody = null;
+        }
+        ByteBuf backlogged;
+        while ((backlogged = sendBacklog.poll()) != null) {
+            backlogged.release();
+        }
+        sendBacklogAttempts.clear();
+        for (ByteBuf[] queue : orderQueues) {
+            if (queue == null) {
+                continue;
+            }
+            for (int i = 0; i < queue.length; i++) {
+                if (queue[i] != null) {
+                    queue[i].release();
+                    queue[i] = null;
+                }
+            }
+        }
+        resendWheel.clear();
+        splitAssembler.close();
+        unackedCount = 0;
+    }
+    public void send(ByteBuf payload, int reliability) {
+        send(payload, reliability, 0);
+    }
+    public void send(ByteBuf payload, int reliability, int orderChannel) {
+        try {
+            if (closed) {
+                return;
+            }
+            int length = payload.readableBytes();
+            if (length > maxFramePayload(reliability)) {
+                sendSplit(payload, reliability, orderChannel);
+                return;
+            }
+            ByteBuf body = batchFor(frameHeaderSize(reliability, false) + length);
+            writeFrameHeader(body, reliability, nextOrderIndex(reliability, orderChannel), orderChannel, length, 0, 0, 0);
+            body.writeBytes(payload);
+            framesSent++;
+        } finally {
+            payload.release();
+        }
+    }
+    private void sendSplit(ByteBuf payload, int reliability, int orderChannel) {
+        if (reliability == UNRELIABLE || reliability == UNRELIABLE_WITH_ACK_RECEIPT) {
+            reliability = RELIABLE;
+        } else if (reliability == UNRELIABLE_SEQUENCED) {
+            reliability = RELIABLE_SEQUENCED;
+        }
+        int chunkSize = mtu - UDP_IP_OVERHEAD - DATAGRAM_HEADER_SIZE - frameHeaderSize(reliability, true);
+        int splitCount = (payload.readableBytes() + chunkSize - 1) / chunkSize;
+        int splitId = nextSplitId;
+        nextSplitId = (nextSplitId + 1) & 0xFFFF;
+        int orderIndex = nextOrderIndex(reliability, orderChannel);
+        for (int splitIndex = 0; splitIndex < splitCount; splitIndex++) {
+            int length = Math.min(chunkSize, payload.readableBytes());
+            ByteBuf body = batchFor(frameHeaderSize(reliability, true) + length);
+            writeFrameHeader(body, reliability, orderIndex, orderChannel, length, splitCount, splitId, splitIndex);
+            body.writeBytes(payload, length);
+            framesSent++;
+        }
+    }
+    private ByteBuf batchFor(int frameSize) {
+        int maxBody = mtu - UDP_IP_OVERHEAD - DATAGRAM_HEADER_SIZE;
+        if (pendingBody != null && pendingBody.readableBytes() + frameSize > maxBody) {
+            flushBatch();
+        }
+        if (pendingBody == null) {
+            pendingBody = channel.alloc().ioBuffer(maxBody);
+        }
+        return pendingBody;
+    }
+    private void flushBatch() {
+        if (pendingBody == null) {
+            return;
+        }
+        ByteBuf body = pendingBody;
+        pendingBody = null;
+        sendDatagram(body, 1);
+    }
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        flushBatch();
+        channel.flush();
+    }
+    public int maxFramePayload(int reliability) {
+        return mtu - UDP_IP_OVERHEAD - DATAGRAM_HEADER_SIZE - frameHeaderSize(reliability, false);
+    }
+    private int nextOrderIndex(int reliability, int orderChannel) {
+        if (!isSequencedOrOrdered(reliability)) {
+            return 0;
+        }
+        int orderIndex = nextOrderIndex[orderChannel];
+        nextOrderIndex[orderChannel] = (orderIndex + 1) & SEQ_MASK;
+        return orderIndex;
+    }
+    private void writeFrameHeader(ByteBuf body, int reliability, int orderIndex, int orderChannel, int length, int splitCount, int splitId, int splitIndex) {
+        body.writeByte((reliability << 5) | (splitCount > 0 ? 0x10 : 0));
+        body.writeShort(length << 3);
+        if (isReliable(reliability)) {
+            body.writeMediumLE(nextMessageIndex);
+            nextMessageIndex = (nextMessageIndex + 1) & SEQ_MASK;
+        }
+        if (isSequencedOrOrdered(reliability)) {
+            body.writeMediumLE(orderIndex);
+            body.writeByte(orderChannel);
+        }
+        if (splitCount > 0) {
+            body.writeInt(splitCount);
+            body.writeShort(splitId);
+            body.writeInt(splitIndex);
+        }
+    }
+    static int frameHeaderSize(int reliability, boolean split) {
+        int size = 3;
+        if (isReliable(reliability)) {
+            size += 3;
+        }
+        if (isSequencedOrOrdered(reliability)) {
+            size += 4;
+        }
+        if (split) {
+            size += 10;
+        }
+        return size;
+    }
+    static boolean isReliable(int reliability) {
+        return reliability == RELIABLE || reliability == RELIABLE_ORDERED || reliability == RELIABLE_SEQUENCED
+                || reliability == RELIABLE_WITH_ACK_RECEIPT || reliability == RELIABLE_ORDERED_WITH_ACK_RECEIPT;
+    }
+    static boolean isSequencedOrOrdered(int reliability) {
+        return reliability == UNRELIABLE_SEQUENCED || reliability == RELIABLE_ORDERED || reliability == RELIABLE_SEQUENCED
+                || reliability == RELIABLE_ORDERED_WITH_ACK_RECEIPT;
+    }
+    private static boolean isOrdered(int reliability) {
+        return reliability == RELIABLE_ORDERED || reliability == RELIABLE_ORDERED_WITH_ACK_RECEIPT;
+    }
+    private static int seqDiff(int a, int b) {
+        return ((a - b) << 8) >> 8;
+    }
+    private void sendDatagram(ByteBuf body, int attempts) {
+        int slot = nextSendSeq & WINDOW_MASK;
+        if (sentBodies[slot] != null) {
+            if (attempts > 1) {
+                sendBacklog.addFirst(body);
+                sendBacklogAttempts.addFirst(attempts);
+            } else {
+                sendBacklog.addLast(body);
+                sendBacklogAttempts.addLast(attempts);
+            }
+            return;
+        }
+        int seq = nextSendSeq;
+        nextSendSeq = (nextSendSeq + 1) & SEQ_MASK;
+        sentBodies[slot] = body;
+        sentSeqs[slot] = seq;
+        sentTimes[slot] = System.nanoTime();
+        sentAttempts[slot] = (byte) attempts;
+        unackedCount++;
+        datagramsSent++;
+        ByteBuf datagram = channel.alloc().ioBuffer(DATAGRAM_HEADER_SIZE + body.readableBytes());
+        datagram.writeByte(ID_DATAGRAM);
+        datagram.writeMediumLE(seq);
+        datagram.writeBytes(body, body.readerIndex(), body.readableBytes());
+        channel.write(new DatagramPacket(datagram, remoteAddress));
+        resendWheel.schedule(seq, Math.min(rtoNanos << (attempts - 1), MAX_RTO_NANOS));
+    }
+    private void drainBacklog() {
+        ByteBuf body;
+        while ((body = sendBacklog.peek()) != null && sentBodies[nextSendSeq & WINDOW_MASK] == null) {
+            sendBacklog.poll();
+            sendDatagram(body, sendBacklogAttempts.poll());
+        }
+    }
+    public boolean isSendWindowFull() {
+        return !sendBacklog.isEmpty() || sentBodies[nextSendSeq & WINDOW_MASK] != null;
+    }
+    private void retransmit(int slot) {
+        ByteBuf body = sentBodies[slot];
+        int attempts = sentAttempts[slot] + 1;
+        sentBodies[slot] = null;
+        unackedCount--;
+        resendWheel.cancel(sentSeqs[slot]);
+        if (attempts > MAX_SEND_ATTEMPTS) {
+            body.release();
+            ProxyLog.warn("RakNet session to " + remoteAddress + " timed out after " + MAX_SEND_ATTEMPTS + " send attempts.");
+            client.handleRakNetTimeout();
+            return;
+        }
+        retransmits++;
+        ProxyMetrics.recordRakNetRetransmit();
+        sendDatagram(body, attempts);
+    }
+    @Override
+    public void onExpired(int seq) {
+        int slot = seq & WINDOW_MASK;
+        if (sentBodies[slot] != null && sentSeqs[slot] == seq) {
+            retransmit(slot);
+        }
+    }
+    public void handleDatagram(ByteBuf buf) {
+        if (closed || buf.readableBytes() < 3) {
+            return;
+        }
+        lastReceiveNanos = System.nanoTime();
+        int seq = buf.readUnsignedMediumLE();
+        queueAck(seq);
+        if (!markDatagramReceived(seq)) {
+            duplicatesReceived++;
+            return;
+        }
+        while (buf.isReadable() && !closed) {
+            if (!readFrame(buf)) {
+                return;
+            }
+        }
+    }
+    private void queueAck(int seq) {
+        if (ackCount == ackQueue.length) {
+            flushAcks();
+        }
+        ackQueue[ackCount++] = seq;
+    }
+    private boolean markDatagramReceived(int seq) {
+        int diff = seqDiff(seq, highestReceivedSeq);
+        if (diff > 0) {
+            int missing = Math.min(diff - 1, WINDOW - 1);
+            for (int i = 1; i <= missing; i++) {
+                int lost = (highestReceivedSeq + i) & SEQ_MASK;
+                clearBit(receivedSeqBits, lost);
+                if (nackCount < nackQueue.length) {
+                    nackQueue[nackCount++] = lost;
+                }
+            }
+            if (diff >= WINDOW) {
+                Arrays.fill(receivedSeqBits, 0);
+            }
+            setBit(receivedSeqBits, seq);
+            highestReceivedSeq = seq;
+            return true;
+        }
+        if (diff <= -WINDOW || testBit(receivedSeqBits, seq)) {
+            return false;
+        }
+        setBit(receivedSeqBits, seq);
+        return true;
+    }
+    private boolean markReliableReceived(int messageIndex) {
+        int diff = seqDiff(messageIndex, reliableBase);
+        if (diff < 0 || diff >= WINDOW || testBit(reliableBits, messageIndex)) {
+            return false;
+        }
+        setBit(reliableBits, messageIndex);
+        while (testBit(reliableBits, reliableBase)) {
+            clearBit(reliableBits, reliableBase);
+            reliableBase = (reliableBase + 1) & SEQ_MASK;
+        }
+        return true;
+    }
+    private static boolean testBit(long[] bits, int index) {
+        int bit = index & ((bits.length << 6) - 1);
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+    private static void setBit(long[] bits, int index) {
+        int bit = index & ((bits.length << 6) - 1);
+        bits[bit >>> 6] |= 1L << bit;
+    }
+    private static void clearBit(long[] bits, int index) {
+        int bit = index & ((bits.length << 6) - 1);
+        bits[bit >>> 6] &= ~(1L << bit);
+    }
+    private boolean readFrame(ByteBuf buf) {
+        if (buf.readableBytes() < 3) {
+            return false;
+        }
+        int flags = buf.readUnsignedByte();
+        int reliability = flags >>> 5;
+        boolean split = (flags & 0x10) != 0;
+        int length = (buf.readUnsignedShort() + 7) >>> 3;
+        if (buf.readableBytes() < frameHeaderSize(reliability, split) - 3 + length) {
+            return false;
+        }
+        int messageIndex = -1;
+        if (isReliable(reliability)) {
+            messageIndex = buf.readUnsignedMediumLE();
+        }
+        int orderIndex = 0;
+        int orderChannel = 0;
+        if (isSequencedOrOrdered(reliability)) {
+            orderIndex = buf.readUnsignedMediumLE();
+            orderChannel = buf.readUnsignedByte();
+            if (orderChannel >= ORDER_CHANNELS) {
+                return false;
+            }
+        }
+        int splitCount = 0;
+        int splitId = 0;
+        int splitIndex = 0;
+        if (split) {
+            splitCount = buf.readInt();
+            splitId = buf.readUnsignedShort();
+            splitIndex = buf.readInt();
+        }
+        ByteBuf payload = buf.readSlice(length);
+        if (messageIndex >= 0 && !markReliableReceived(messageIndex)) {
+            duplicatesReceived++;
+            return true;
+        }
+        if (!split) {
+            deliver(reliability, orderIndex, orderChannel, payload);
+            return true;
+        }
+        ByteBuf assembled = splitAssembler.add(splitId, splitCount, splitIndex, payload);
+        if (splitAssembler.getFailure() != null) {
+            client.handleRakNetFailure(splitAssembler.getFailure());
+            return false;
+        }
+        if (assembled != null) {
+            try {
+                deliver(reliability, orderIndex, orderChannel, assembled);
+            } finally {
+                assembled.release();
+            }
+        }
+        return true;
+    }
+    private void deliver(int reliability, int orderIndex, int orderChannel, ByteBuf payload) {
+        if (isOrdered(reliability)) {
+            deliverOrdered(orderIndex, orderChannel, payload);
+            return;
+        }
+        if (isSequencedOrOrdered(reliability)) {
+            int highest = highestSequencedIndex[orderChannel];
+            if (highest >= 0 && seqDiff(orderIndex, highest) <= 0) {
+                return;
+            }
+            highestSequencedIndex[orderChannel] = orderIndex;
+        }
+        client.handleEncapsulated(payload);
+    }
+    private void deliverOrdered(int orderIndex, int orderChannel, ByteBuf payload) {
+        int expected = expectedOrderIndex[orderChannel];
+        int diff = seqDiff(orderIndex, expected);
+        if (diff < 0) {
+            return;
+        }
+        if (diff >= ORDER_WINDOW) {
+            // The frame is already ACKed and marked received, so the peer will not resend it and the channel could
+            // never advance past it again.
+            client.handleRakNetFailure("ordered frame " + orderIndex + " on channel " + orderChannel + " is " + diff + " ahead of " + expected);
+            return;
+        }
+        ByteBuf[] queue = orderQueues[orderChannel];
+        if (diff > 0) {
+            if (queue == null) {
+                queue = orderQueues[orderChannel] = new ByteBuf[ORDER_WINDOW];
+            }
+            int slot = orderIndex & (ORDER_WINDOW - 1);
+            if (queue[slot] == null) {
+                // Copied for the same reason as split fragments: a slice would pin the whole receive batch buffer.
+                int length = payload.readableBytes();
+                ByteBuf copy = channel.alloc().ioBuffer(length, length);
+                copy.writeBytes(payload, payload.readerIndex(), length);
+                queue[slot] = copy;
+            }
+            return;
+        }
+        // The index is advanced before each hand-off, so a packet that throws cannot leave the channel waiting on an
+        // index that was already delivered.
+        expected = (expected + 1) & SEQ_MASK;
+        expectedOrderIndex[orderChannel] = expected;
+        client.handleEncapsulated(payload);
+        if (queue != null) {
+            ByteBuf queued;
+            while (!closed && (queued = queue[expected & (ORDER_WINDOW - 1)]) != null) {
+                queue[expected & (ORDER_WINDOW - 1)] = null;
+                expected = (expected + 1) & SEQ_MASK;
+                expectedOrderIndex[orderChannel] = expected;
+                try {
+                    client.handleEncapsulated(queued);
+                } finally {
+                    queued.release();
+                }
+            }
+        }
+    }
+    public void handleAck(ByteBuf buf) {
+        handleRanges(buf, true);
+        drainBacklog();
+        if (!closed && !isSendWindowFull()) {
+            client.onSendWindowAvailable();
+        }
+    }
+    public void handleNack(ByteBuf buf) {
+        handleRanges(buf, false);
+    }
+    private void handleRanges(ByteBuf buf, boolean ack) {
+        if (closed || buf.readableBytes() < 2) {
+            return;
+        }
+        lastReceiveNanos = System.nanoTime();
+        int records = buf.readUnsignedShort();
+        for (int r = 0; r < records && buf.isReadable(); r++) {
+            boolean single = buf.readBoolean();
+            if (buf.readableBytes() < (single ? 3 : 6)) {
+                return;
+            }
+            int start = buf.readUnsignedMediumLE();
+            int end = single ? start : buf.readUnsignedMediumLE();
+            int count = seqDiff(end, start);
+            if (count < 0 || count >= WINDOW) {
+                continue;
+            }
+            for (int i = 0; i <= count; i++) {
+                int seq = (start + i) & SEQ_MASK;
+                int slot = seq & WINDOW_MASK;
+                if (sentBodies[slot] == null || sentSeqs[slot] != seq) {
+                    continue;
+                }
+                if (ack) {
+                    if (sentAttempts[slot] == 1) {
+                        updateRtt(System.nanoTime() - sentTimes[slot]);
+                    }
+                    sentBodies[slot].release();
+                    sentBodies[slot] = null;
+                    unackedCount--;
+                    resendWheel.cancel(seq);
+                } else {
+                    nacksReceived++;
+                    ProxyMetrics.recordRakNetNack();
+                    retransmit(slot);
+                }
+            }
+        }
+    }
+    private void updateRtt(long sampleNanos) {
+        ProxyMetrics.recordRakNetRtt(sampleNanos);
+        if (smoothedRttNanos < 0) {
+            smoothedRttNanos = sampleNanos;
+            rttVarianceNanos = sampleNanos / 2;
+        } else {
+            rttVarianceNanos = (3 * rttVarianceNanos + Math.abs(smoothedRttNanos - sampleNanos)) / 4;
+            smoothedRttNanos = (7 * smoothedRttNanos + sampleNanos) / 8;
+        }
+        rtoNanos = Math.max(MIN_RTO_NANOS, Math.min(MAX_RTO_NANOS, smoothedRttNanos + 4 * rttVarianceNanos));
+    }
+    private void tick() {
+        if (closed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastReceiveNanos > TimeUnit.MILLISECONDS.toNanos(ProxyConfig.RAKNET_SESSION_TIMEOUT_MILLIS)) {
+            ProxyLog.warn("RakNet session to " + remoteAddress + " timed out, nothing received for " + ProxyConfig.RAKNET_SESSION_TIMEOUT_MILLIS + " ms.");
+            client.handleRakNetTimeout();
+            return;
+        }
+        flushBatch();
+        flushAcks();
+        flushNacks();
+        resendWheel.advance(now, this);
+        splitAssembler.expire(now);
+        if (splitAssembler.getFailure() != null) {
+            client.handleRakNetFailure(splitAssembler.getFailure());
+            return;
+        }
+        channel.flush();
+    }
+    private void flushAcks() {
+        if (ackCount == 0) {
+            return;
+        }
+        Arrays.sort(ackQueue, 0, ackCount);
+        writeRanges(ID_ACK, ackQueue, ackCount);
+        ackCount = 0;
+    }
+    private void flushNacks() {
+        if (nackCount == 0) {
+            return;
+        }
+        int pending = 0;
+        for (int i = 0; i < nackCount; i++) {
+            int seq = nackQueue[i];
+            if (seqDiff(highestReceivedSeq, seq) < WINDOW && !testBit(receivedSeqBits, seq)) {
+                nackQueue[pending++] = seq;
+            }
+        }
+        nackCount = 0;
+        if (pending > 0) {
+            Arrays.sort(nackQueue, 0, pending);
+            writeRanges(ID_NACK, nackQueue, pending);
+        }
+    }
+    private void writeRanges(int packetId, int[] seqs, int count) {
+        int maxSize = mtu - UDP_IP_OVERHEAD;
+        ByteBuf packet = null;
+        int records = 0;
+        int i = 0;
+        while (i < count) {
+            int start = seqs[i];
+            int end = start;
+            i++;
+            while (i < count && (seqs[i] == end || seqs[i] == end + 1)) {
+                end = seqs[i++];
+            }
+            if (packet != null && packet.writerIndex() + 7 > maxSize) {
+                packet.setShort(1, records);
+                channel.write(new DatagramPacket(packet, remoteAddress));
+                packet = null;
+            }
+            if (packet == null) {
+                packet = channel.alloc().ioBuffer(Math.min(maxSize, 3 + 7 * (count - i + 1)));
+                packet.writeByte(packetId);
+                packet.writeShort(0);
+                records = 0;
+            }
+            if (start == end) {
+                packet.writeBoolean(true);
+                packet.writeMediumLE(start);
+            } else {
+                packet.writeBoolean(false);
+                packet.writeMediumLE(start);
+                packet.writeMediumLE(end);
+            }
+            records++;
+        }
+        if (packet != null) {
+            packet.setShort(1, records);
+            channel.write(new DatagramPacket(packet, remoteAddress));
+        }
+    }
+    public int getMtu() {
+        return mtu;
+    }
+    public int getUnackedCount() {
+        return unackedCount;
+    }
+    public long getSmoothedRttNanos() {
+        return smoothedRttNanos;
+    }
+    public long getRetransmits() {
+        return retransmits;
+    }
+    public long getNacksReceived() {
+        return nacksReceived;
+    }
+    public long getSplitRejectedFragments() {
+        return splitAssembler.getRejectedFragments();
+    }
+    public long getSplitExpired() {
+        return splitAssembler.getExpiredSplits();
+    }
+    public long getFramesSent() {
+        return framesSent;
+    }
+    public long getDatagramsSent() {
+        return datagramsSent;
+    }
+    public long getDuplicatesReceived() {
+        return duplicatesReceived;
+    }
+}
@@ -0,0 +1,111 @@
+package org.smnetworking;
+import java.util.Arrays;
+final class RakNetTimerWheel {
+    private static final int INITIAL_SLOT_CAPACITY = 8;
+    interface ExpiryHandler {
+        void onExpired(int value);
+    }
+    private final int[][] slotValues;
+    private final long[][] slotDeadlines;
+    private final int[] slotSizes;
+    private final int mask;
+    // Where each scheduled value currently sits, keyed by value & valueMask. At most one entry per key is live, so the
+    // wheel never holds more than valueCapacity entries and an entry can be cancelled without scanning its slot.
+    private final int[] valueSlots;
+    private final int[] valueIndexes;
+    private final int valueMask;
+    private final long tickNanos;
+    private final long startNanos;
+    private long currentTick;
+    RakNetTimerWheel(int slotCount, int valueCapacity, long tickNanos, long startNanos) {
+        if (Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("Timer wheel slot count must be a power of two: " + slotCount);
+        }
+        if (Integer.bitCount(valueCapacity) != 1) {
+            throw new IllegalArgumentException("Timer wheel value capacity must be a power of two: " + valueCapacity);
+        }
+        this.slotValues = new int[slotCount][];
+        this.slotDeadlines = new long[slotCount][];
+        this.slotSizes = new int[slotCount];
+        this.mask = slotCount - 1;
+        this.valueSlots = new int[valueCapacity];
+        this.valueIndexes = new int[valueCapacity];
+        this.valueMask = valueCapacity - 1;
+        Arrays.fill(valueSlots, -1);
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+    }
+    // Replaces any entry still scheduled under the same key.
+    void schedule(int value, long delayNanos) {
+        int key = value & valueMask;
+        if (valueSlots[key] >= 0) {
+            removeAt(valueSlots[key], valueIndexes[key]);
+        }
+        long ticks = Math.max(1, (delayNanos + tickNanos - 1) / tickNanos);
+        long deadline = currentTick + ticks;
+        int slot = (int) (deadline & mask);
+        int size = slotSizes[slot];
+        int[] values = slotValues[slot];
+        if (values == null) {
+            values = slotValues[slot] = new int[INITIAL_SLOT_CAPACITY];
+            slotDeadlines[slot] = new long[INITIAL_SLOT_CAPACITY];
+        } else if (size == values.length) {
+            int capacity = Math.min(size * 2, valueSlots.length);
+            values = slotValues[slot] = Arrays.copyOf(values, capacity);
+            slotDeadlines[slot] = Arrays.copyOf(slotDeadlines[slot], capacity);
+        }
+        values[size] = value;
+        slotDeadlines[slot][size] = deadline;
+        slotSizes[slot] = size + 1;
+        valueSlots[key] = slot;
+        valueIndexes[key] = size;
+    }
+    void cancel(int value) {
+        int key = value & valueMask;
+        int slot = valueSlots[key];
+        if (slot >= 0 && slotValues[slot][valueIndexes[key]] == value) {
+            removeAt(slot, valueIndexes[key]);
+        }
+    }
+    void advance(long nowNanos, ExpiryHandler handler) {
+        long targetTick = (nowNanos - startNanos) / tickNanos;
+        while (currentTick < targetTick) {
+            currentTick++;
+            expireSlot((int) (currentTick & mask), handler);
+        }
+    }
+    private void expireSlot(int slot, ExpiryHandler handler) {
+        int i = 0;
+        while (i < slotSizes[slot]) {
+            // Re-read the arrays each pass: the handler may reschedule into this slot and grow them.
+            int[] values = slotValues[slot];
+            if (slotDeadlines[slot][i] > currentTick) {
+                i++;
+                continue;
+            }
+            int value = values[i];
+            removeAt(slot, i);
+            handler.onExpired(value);
+        }
+        // A burst can leave a slot oversized; drop it once drained rather than keeping the high-water mark forever.
+        if (slotSizes[slot] == 0 && slotValues[slot] != null && slotValues[slot].length > INITIAL_SLOT_CAPACITY) {
+            slotValues[slot] = null;
+            slotDeadlines[slot] = null;
+        }
+    }
+    private void removeAt(int slot, int index) {
+        int[] values = slotValues[slot];
+        long[] deadlines = slotDeadlines[slot];
+        valueSlots[values[index] & valueMask] = -1;
+        int last = --slotSizes[slot];
+        if (index != last) {
+            values[index] = values[last];
+            deadlines[index] = deadlines[last];
+            valueIndexes[values[index] & valueMask] = index;
+        }
+    }
+    void clear() {
+        Arrays.fill(slotSizes, 0);
+        Arrays.fill(valueSlots, -1);
+    }
+}
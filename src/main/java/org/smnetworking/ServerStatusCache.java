@@ -0,0 +1,142 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoop;
+import io.netty.channel.socket.DatagramPacket;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+public class ServerStatusCache {
+    private static final byte[] RAKNET_MAGIC = {(byte) 0x00, (byte) 0xFF, (byte) 0xFF, (byte) 0x00, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFE, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0xFD, (byte) 0x12, (byte) 0x34, (byte) 0x56, (byte) 0x78};
+    private static final int UNCONNECTED_PING = 0x01;
+    private static final int UNCONNECTED_PONG = 0x1c;
+    private static final long STALE_NANOS = TimeUnit.MILLISECONDS.toNanos(3L * ProxyConfig.STATUS_REFRESH_MILLIS);
+    private final PeSessionDemultiplexer demultiplexer;
+    private final InetSocketAddress backend;
+    private EventLoop loop;
+    private ScheduledFuture<?> refreshTask;
+    // Starts at start() so a backend gets one stale window to answer before it is considered unhealthy.
+    private volatile long lastPongNanos;
+    private volatile long rttNanos;
+    private boolean online;
+    // Complete Status Response body (packet ID, VarInt length, JSON), rebuilt only when a pong arrives or goes stale.
+    private volatile byte[] statusResponse;
+    public ServerStatusCache(PeSessionDemultiplexer demultiplexer, InetSocketAddress backend) {
+        this.demultiplexer = demultiplexer;
+        this.backend = backend;
+        this.statusResponse = serialize("Connecting to PE server...", 0, ProxyConfig.STATUS_MAX_PLAYERS);
+    }
+    public void start(EventLoop loop) {
+        this.loop = loop;
+        this.lastPongNanos = System.nanoTime();
+        refreshTask = loop.scheduleAtFixedRate(this::refresh, 0, ProxyConfig.STATUS_REFRESH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+    public void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+        }
+    }
+    public ByteBuf newStatusResponse(ByteBufAllocator alloc) {
+        byte[] body = statusResponse;
+        ByteBuf packet = JavaPacketEncoder.newPacket(alloc, body.length);
+        packet.writeBytes(body);
+        return packet;
+    }
+    private void refresh() {
+        if (online && System.nanoTime() - lastPongNanos > STALE_NANOS) {
+            online = false;
+            statusResponse = serialize("PE server is not responding", 0, ProxyConfig.STATUS_MAX_PLAYERS);
+        }
+        PeSocket socket = demultiplexer.baseSocket(loop);
+        if (socket == null || !socket.channel().isActive()) {
+            return;
+        }
+        ByteBuf ping = socket.channel().alloc().ioBuffer(25);
+        ping.writeByte(UNCONNECTED_PING);
+        // The ping time is echoed back verbatim, so a nanoTime stamp gives the round trip without any bookkeeping.
+        ping.writeLong(System.nanoTime());
+        ping.writeBytes(RAKNET_MAGIC);
+        socket.channel().writeAndFlush(new DatagramPacket(ping, backend), socket.channel().voidPromise());
+    }
+    public boolean isPongFrom(InetSocketAddress sender, ByteBuf packet) {
+        return packet.readableBytes() > 0 && packet.getUnsignedByte(packet.readerIndex()) == UNCONNECTED_PONG && sender.equals(backend);
+    }
+    // Accepts both the 0.8 "MCCPP;Demo;<name>" and the later "MCPE;<motd>;<protocol>;<version>;<online>;<max>" formats.
+    public void onPong(ByteBuf packet) {
+        if (packet.readableBytes() < 1 + 8 + 8 + RAKNET_MAGIC.length + 2) {
+            return;
+        }
+        long sentNanos = packet.getLong(packet.readerIndex() + 1);
+        packet.skipBytes(1 + 8 + 8);
+        for (byte b : RAKNET_MAGIC) {
+            if (packet.readByte() != b) {
+                return;
+            }
+        }
+        int length = packet.readUnsignedShort();
+        if (length > packet.readableBytes()) {
+            return;
+        }
+        String serverName = packet.toString(packet.readerIndex(), length, StandardCharsets.UTF_8);
+        packet.skipBytes(length);
+        String[] fields = serverName.split(";");
+        String motd = serverName;
+        int onlinePlayers = 0;
+        int maxPlayers = ProxyConfig.STATUS_MAX_PLAYERS;
+        if (fields[0].equals("MCPE") && fields.length >= 6) {
+            motd = fields[1];
+            onlinePlayers = parseCount(fields[4], 0);
+            maxPlayers = parseCount(fields[5], maxPlayers);
+        } else if (fields[0].equals("MCCPP") && fields.length >= 3) {
+            motd = serverName.substring(fields[0].length() + fields[1].length() + 2);
+        }
+        long now = System.nanoTime();
+        long rtt = now - sentNanos;
+        if (rtt >= 0 && rtt < STALE_NANOS) {
+            long smoothed = rttNanos;
+            rttNanos = smoothed == 0 ? rtt : smoothed + ((rtt - smoothed) >> 3);
+        }
+        lastPongNanos = now;
+        online = true;
+        statusResponse = serialize(motd, onlinePlayers, maxPlayers);
+    }
+    public boolean isHealthy() {
+        return System.nanoTime() - lastPongNanos <= STALE_NANOS;
+    }
+    public long getRttNanos() {
+        return rttNanos;
+    }
+    private static int parseCount(String field, int fallback) {
+        try {
+            return Integer.parseInt(field.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+    private static byte[] serialize(String motd, int onlinePlayers, int maxPlayers) {
+        StringBuilder json = new StringBuilder(128 + motd.length());
+        json.append("{\"version\":{\"name\":\"1.8.9\",\"protocol\":47},\"players\":{\"max\":").append(maxPlayers)
+                .append(",\"online\":").append(onlinePlayers)
+                .append("},\"description\":{\"text\":\"");
+        for (int i = 0; i < motd.length(); i++) {
+            char c = motd.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append("\"}}");
+        ByteBuf body = Unpooled.buffer(json.length() + 8);
+        ProtocolUtils.writeVarInt(0x00, body);
+        ProtocolUtils.writeString(json.toString(), body);
+        byte[] bytes = new byte[body.readableBytes()];
+        body.readBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,138 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+final class SplitPacketAssembler {
+    private static final AtomicLong globalInFlightBytes = new AtomicLong();
+    private static final long SPLIT_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(ProxyConfig.SPLIT_TIMEOUT_MILLIS);
+    private final ByteBufAllocator alloc;
+    private final IntObjectHashMap<PendingSplit> pendingSplits = new IntObjectHashMap<>();
+    private long sessionInFlightBytes;
+    private long rejectedFragments;
+    private long expiredSplits;
+    private String failure;
+    SplitPacketAssembler(ByteBufAllocator alloc) {
+        this.alloc = alloc;
+    }
+    ByteBuf add(int splitId, int splitCount, int splitIndex, ByteBuf fragment) {
+        if (splitCount < 1 || splitCount > ProxyConfig.SPLIT_MAX_COUNT || splitIndex < 0 || splitIndex >= splitCount) {
+            return reject("fragment " + splitIndex + "/" + splitCount + " of split " + splitId + " is out of range");
+        }
+        PendingSplit split = pendingSplits.get(splitId);
+        if (split == null) {
+            if (pendingSplits.size() >= ProxyConfig.SPLIT_MAX_CONCURRENT) {
+                return reject("more than " + ProxyConfig.SPLIT_MAX_CONCURRENT + " splits in flight");
+            }
+            split = new PendingSplit(splitCount);
+            pendingSplits.put(splitId, split);
+        } else if (split.parts.length != splitCount) {
+            drop(splitId, split);
+            return reject("split " + splitId + " changed its fragment count");
+        }
+        if (split.parts[splitIndex] != null) {
+            return null;
+        }
+        int length = fragment.readableBytes();
+        if (sessionInFlightBytes + length > ProxyConfig.SPLIT_SESSION_MAX_BYTES) {
+            drop(splitId, split);
+            return reject("session split buffer is over " + ProxyConfig.SPLIT_SESSION_MAX_BYTES + " bytes");
+        }
+        if (globalInFlightBytes.addAndGet(length) > ProxyConfig.SPLIT_GLOBAL_MAX_BYTES) {
+            globalInFlightBytes.addAndGet(-length);
+            drop(splitId, split);
+            return reject("proxy-wide split buffer is over " + ProxyConfig.SPLIT_GLOBAL_MAX_BYTES + " bytes");
+        }
+        sessionInFlightBytes += length;
+        split.bytes += length;
+        // Copy rather than slice: a received datagram can be a slice of a whole recvmmsg batch buffer, and retaining it
+        // would pin the entire batch while the caps above only account for this fragment.
+        ByteBuf part = alloc.ioBuffer(length, length);
+        part.writeBytes(fragment, fragment.readerIndex(), length);
+        split.parts[splitIndex] = part;
+        if (++split.received < splitCount) {
+            return null;
+        }
+        pendingSplits.remove(splitId);
+        release(split.bytes);
+        CompositeByteBuf assembled = alloc.compositeBuffer(splitCount);
+        assembled.addComponents(true, split.parts);
+        return assembled;
+    }
+    void expire(long nowNanos) {
+        if (pendingSplits.isEmpty()) {
+            return;
+        }
+        Iterator<IntObjectMap.PrimitiveEntry<PendingSplit>> it = pendingSplits.entries().iterator();
+        while (it.hasNext()) {
+            PendingSplit split = it.next().value();
+            if (nowNanos - split.createdNanos > SPLIT_TIMEOUT_NANOS) {
+                it.remove();
+                split.releaseParts();
+                release(split.bytes);
+                expiredSplits++;
+                failure = "split timed out after " + ProxyConfig.SPLIT_TIMEOUT_MILLIS + " ms";
+            }
+        }
+    }
+    void close() {
+        for (PendingSplit split : pendingSplits.values()) {
+            split.releaseParts();
+            release(split.bytes);
+        }
+        pendingSplits.clear();
+    }
+    // Fragments reach the assembler only after their datagram was ACKed, so the peer never resends one that is turned
+    // away here: the message is gone for good. The caller must check getFailure() and end the session.
+    private ByteBuf reject(String reason) {
+        rejectedFragments++;
+        failure = reason;
+        return null;
+    }
+    private void drop(int splitId, PendingSplit split) {
+        pendingSplits.remove(splitId);
+        split.releaseParts();
+        release(split.bytes);
+    }
+    private void release(long bytes) {
+        sessionInFlightBytes -= bytes;
+        globalInFlightBytes.addAndGet(-bytes);
+    }
+    long getSessionInFlightBytes() {
+        return sessionInFlightBytes;
+    }
+    long getRejectedFragments() {
+        return rejectedFragments;
+    }
+    long getExpiredSplits() {
+        return expiredSplits;
+    }
+    String getFailure() {
+        return failure;
+    }
+    static long getGlobalInFlightBytes() {
+        return globalInFlightBytes.get();
+    }
+    private static final class PendingSplit {
+        private final ByteBuf[] parts;
+        private final long createdNanos = System.nanoTime();
+        private int received;
+        private long bytes;
+        private PendingSplit(int splitCount) {
+            this.parts = new ByteBuf[splitCount];
+        }
+        private void releaseParts() {
+            for (int i = 0; i < parts.length; i++) {
+                if (parts[i] != null) {
+                    parts[i].release();
+                    parts[i] = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+// Direct-mapped cache of short decoded strings (player names, chat prefixes). Races only cost a redundant decode,
+// since slots hold immutable Strings and a lookup always verifies the bytes before reusing one.
+public final class StringInternCache {
+    public static final StringInternCache SHARED = new StringInternCache(ProxyConfig.STRING_INTERN_SLOTS, ProxyConfig.STRING_INTERN_MAX_LENGTH);
+    private final String[] slots;
+    private final int mask;
+    private final int maxLength;
+    public StringInternCache(int slots, int maxLength) {
+        int capacity = Integer.highestOneBit(Math.max(2, slots - 1)) << 1;
+        this.slots = new String[capacity];
+        this.mask = capacity - 1;
+        this.maxLength = maxLength;
+    }
+    public String get(ByteBuf buf, int index, int length) {
+        if (length > maxLength) {
+            return buf.toString(index, length, StandardCharsets.UTF_8);
+        }
+        int hash = 0;
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = buf.getByte(index + i);
+            ascii &= b >= 0;
+            hash = 31 * hash + b;
+        }
+        if (!ascii) {
+            return buf.toString(index, length, StandardCharsets.UTF_8);
+        }
+        // For ASCII the String hash equals this byte hash, so a cached entry can be checked cheaply.
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String cached = slots[slot];
+        if (cached != null && cached.length() == length && cached.hashCode() == hash && matches(cached, buf, index, length)) {
+            return cached;
+        }
+        String decoded = buf.toString(index, length, StandardCharsets.US_ASCII);
+        slots[slot] = decoded;
+        return decoded;
+    }
+    private static boolean matches(String cached, ByteBuf buf, int index, int length) {
+        for (int i = 0; i < length; i++) {
+            if (cached.charAt(i) != buf.getByte(index + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package org.smnetworking;
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.atomic.LongAdder;
+public final class TranslatorRegistry {
+    public static final TranslatorRegistry DEFAULT = createDefault();
+    private static final int MAX_PACKET_IDS = 256;
+    // Unknown IDs that do not fit a byte share this extra counter instead of being folded onto a real ID.
+    private static final int OTHER_PACKET_IDS = MAX_PACKET_IDS;
+    private final PacketTranslator[][] javaToPe = new PacketTranslator[JavaConnectionHandler.ConnectionState.values().length][MAX_PACKET_IDS];
+    private final PacketTranslator[][] peToJava = new PacketTranslator[PeClient.PeConnectionState.values().length][MAX_PACKET_IDS];
+    private final LongAdder[] unknownJavaToPe = newCounters();
+    private final LongAdder[] unknownPeToJava = newCounters();
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[MAX_PACKET_IDS + 1];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+    private static int counterSlot(int packetId) {
+        return packetId >= 0 && packetId < MAX_PACKET_IDS ? packetId : OTHER_PACKET_IDS;
+    }
+    private static TranslatorRegistry createDefault() {
+        TranslatorRegistry registry = new TranslatorRegistry();
+        JavaToPeTranslators.register(registry);
+        PeToJavaTranslators.register(registry);
+        return registry;
+    }
+    public void registerJavaToPe(JavaConnectionHandler.ConnectionState state, int packetId, PacketTranslator translator) {
+        javaToPe[state.ordinal()][packetId] = translator;
+    }
+    public void registerPeToJava(PeClient.PeConnectionState state, int packetId, PacketTranslator translator) {
+        peToJava[state.ordinal()][packetId] = translator;
+    }
+    public boolean translateJavaToPe(JavaConnectionHandler.ConnectionState state, int packetId, PeClient session, ByteBuf in) {
+        PacketTranslator translator = packetId >= 0 && packetId < MAX_PACKET_IDS ? javaToPe[state.ordinal()][packetId] : null;
+        ProxyMetrics.recordPacket(ProxyMetrics.JAVA_TO_PE, packetId, in.readableBytes());
+        if (translator == null) {
+            unknownJavaToPe[counterSlot(packetId)].increment();
+            return false;
+        }
+        long start = System.nanoTime();
+        translator.translate(session, in);
+        ProxyMetrics.recordTranslation(ProxyMetrics.JAVA_TO_PE, System.nanoTime() - start);
+        return true;
+    }
+    public boolean translatePeToJava(PeClient.PeConnectionState state, int packetId, PeClient session, ByteBuf in) {
+        PacketTranslator translator = packetId >= 0 && packetId < MAX_PACKET_IDS ? peToJava[state.ordinal()][packetId] : null;
+        ProxyMetrics.recordPacket(ProxyMetrics.PE_TO_JAVA, packetId, in.readableBytes());
+        if (translator == null) {
+            unknownPeToJava[counterSlot(packetId)].increment();
+            return false;
+        }
+        long start = System.nanoTime();
+        translator.translate(session, in);
+        ProxyMetrics.recordTranslation(ProxyMetrics.PE_TO_JAVA, System.nanoTime() - start);
+        return true;
+    }
+    public long unknownJavaToPe(int packetId) {
+        return unknownJavaToPe[counterSlot(packetId)].sum();
+    }
+    public long unknownPeToJava(int packetId) {
+        return unknownPeToJava[counterSlot(packetId)].sum();
+    }
+}
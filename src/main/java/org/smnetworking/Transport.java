@@ -0,0 +1,71 @@
+package org.smnetworking;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.FixedRecvByteBufAllocator;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollMode;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+public enum Transport {
+    EPOLL,
+    NIO;
+    public static Transport select() {
+        if (!ProxyConfig.NATIVE_TRANSPORT) {
+            return NIO;
+        }
+        if (Epoll.isAvailable()) {
+            return EPOLL;
+        }
+        ProxyLog.info("Native epoll transport unavailable, falling back to NIO: " + Epoll.unavailabilityCause());
+        return NIO;
+    }
+    public EventLoopGroup newEventLoopGroup(int threads) {
+        return this == EPOLL ? new EpollEventLoopGroup(threads) : new NioEventLoopGroup(threads);
+    }
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return this == EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+    public Class<? extends DatagramChannel> datagramChannelClass() {
+        return this == EPOLL ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+    public int listenerCount() {
+        return this == EPOLL && ProxyConfig.REUSE_PORT ? ProxyConfig.BOSS_THREADS : 1;
+    }
+    public void configureServer(ServerBootstrap b) {
+        if (this != EPOLL) {
+            return;
+        }
+        EpollMode mode = ProxyConfig.EDGE_TRIGGERED ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED;
+        b.option(EpollChannelOption.EPOLL_MODE, mode)
+                .option(EpollChannelOption.SO_REUSEPORT, ProxyConfig.REUSE_PORT)
+                .childOption(EpollChannelOption.EPOLL_MODE, mode)
+                .childOption(EpollChannelOption.TCP_QUICKACK, ProxyConfig.TCP_QUICKACK);
+    }
+    public void configureDatagram(Bootstrap b) {
+        if (this != EPOLL) {
+            return;
+        }
+        b.option(EpollChannelOption.EPOLL_MODE, ProxyConfig.EDGE_TRIGGERED ? EpollMode.EDGE_TRIGGERED : EpollMode.LEVEL_TRIGGERED);
+        if (ProxyConfig.UDP_BATCH_READS > 1) {
+            b.option(EpollChannelOption.MAX_DATAGRAM_PAYLOAD_SIZE, ProxyConfig.UDP_MAX_DATAGRAM_SIZE)
+                    .option(EpollChannelOption.RCVBUF_ALLOCATOR, new FixedRecvByteBufAllocator(ProxyConfig.UDP_MAX_DATAGRAM_SIZE * ProxyConfig.UDP_BATCH_READS));
+        }
+    }
+    public String describe() {
+        if (this != EPOLL) {
+            return "nio";
+        }
+        return "epoll (mode=" + (ProxyConfig.EDGE_TRIGGERED ? "edge-triggered" : "level-triggered")
+                + ", tcpQuickAck=" + ProxyConfig.TCP_QUICKACK
+                + ", reusePort=" + ProxyConfig.REUSE_PORT + " x" + listenerCount()
+                + ", udpBatchReads=" + (ProxyConfig.UDP_BATCH_READS > 1 ? "recvmmsg x" + ProxyConfig.UDP_BATCH_READS : "off") + ")";
+    }
+}
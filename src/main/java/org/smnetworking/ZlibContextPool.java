@@ -0,0 +1,47 @@
+package org.smnetworking;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+public final class ZlibContextPool {
+    private static final ConcurrentLinkedQueue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final ConcurrentLinkedQueue<Inflater> INFLATERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooledDeflaters = new AtomicInteger();
+    private static final AtomicInteger pooledInflaters = new AtomicInteger();
+    private ZlibContextPool() {
+    }
+    public static Deflater acquireDeflater() {
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            return new Deflater(ProxyConfig.COMPRESSION_LEVEL);
+        }
+        pooledDeflaters.decrementAndGet();
+        return deflater;
+    }
+    public static void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if (pooledDeflaters.incrementAndGet() > ProxyConfig.ZLIB_POOL_SIZE) {
+            pooledDeflaters.decrementAndGet();
+            deflater.end();
+            return;
+        }
+        DEFLATERS.offer(deflater);
+    }
+    public static Inflater acquireInflater() {
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            return new Inflater();
+        }
+        pooledInflaters.decrementAndGet();
+        return inflater;
+    }
+    public static void releaseInflater(Inflater inflater) {
+        inflater.reset();
+        if (pooledInflaters.incrementAndGet() > ProxyConfig.ZLIB_POOL_SIZE) {
+            pooledInflaters.decrementAndGet();
+            inflater.end();
+            return;
+        }
+        INFLATERS.offer(inflater);
+    }
+}